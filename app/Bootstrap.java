@@ -1,3 +1,5 @@
+import helpers.analytics.HeavyHitters;
+import helpers.cache.ReferenceData;
 import play.*;
 import play.jobs.*;
 import play.test.*;
@@ -13,5 +15,9 @@ public class Bootstrap extends Job {
             // Initial data of the plateform
             Fixtures.load("initial-data.yml");
         }
+        // categories, languages and featured items are kept in memory
+        ReferenceData.load();
+        // rolling tops of the admin pages, then fed by the visits and votes
+        HeavyHitters.load();
     }
 }
\ No newline at end of file
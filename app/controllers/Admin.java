@@ -1,16 +1,19 @@
 package controllers;
 
 import helpers.TimeSeriePoint;
-import helpers.TimeSeriePointHelper;
+import helpers.analytics.CohortRetention;
+import helpers.analytics.DailyRollup;
+import helpers.analytics.DailySerie;
+import helpers.analytics.HeavyHitters;
+import helpers.analytics.SpaceSaving.Counter;
+import helpers.cache.InsightTrendSeriesCache;
 
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import jobs.AnalyticsJob;
 import jobs.CheckFacebookFriendsAndFollowSyncJob;
@@ -38,7 +41,8 @@ import models.Vote;
 import models.analytics.DailyTotalComment;
 import models.analytics.DailyTotalInsight;
 import models.analytics.DailyTotalVote;
-import models.analytics.UserInsightVisit;
+import models.analytics.DailyUserActivity;
+import models.analytics.DailyVisitSketch;
 import models.analytics.UserListInsightsVisit;
 import models.job.ComputeScoreForUsersTask;
 
@@ -51,9 +55,10 @@ import exceptions.NotFollowingUserException;
 
 import play.Logger;
 import play.Play;
-import play.cache.Cache;
 import play.data.binding.As;
 import play.modules.search.Search;
+import play.modules.search.store.IndexMetrics;
+import play.modules.search.store.ManagedIndex;
 import play.mvc.Controller;
 import play.mvc.With;
 import play.mvc.results.RenderText;
@@ -98,17 +103,41 @@ public class Admin extends Controller {
 		render();
 	}
 	
+	/**
+	 * Health of the search indexes: indexing lag, reader reopens, query latencies and drift from the database
+	 */
+	public static void searchMetrics() {
+		List<ManagedIndex> indexes = Search.getCurrentStore().listIndexes();
+		long[] latencyBounds = IndexMetrics.LATENCY_BOUNDS;
+		render(indexes, latencyBounds);
+	}
+	
 	public static void top() {
 		renderArgs.put("bestUserVotes", User.findBestVoters(20));
 		renderArgs.put("bestUserInsights", User.findBestCreators(20));
 		
 		// top 20 most read insights by registered users since last 7 days
-		List<Object[]> top20Insights = UserInsightVisit.find("select v.insight.uniqueId, v.insight.content, count(v) " +
-				"from UserInsightVisit v " +
-				"where v.creationDate > :crDate " +
-				"group by v.insight.id order by count(v) desc").
-				bind("crDate", new DateMidnight().minusDays(7).toDate()).fetch(20);
+		List<Counter> topReads = HeavyHitters.READ_INSIGHTS.top(20);
+		List<Object[]> top20Insights = new ArrayList<Object[]>(topReads.size());
+		if (!topReads.isEmpty()) {
+			List<Long> ids = new ArrayList<Long>(topReads.size());
+			for (Counter counter : topReads) {
+				ids.add(counter.id);
+			}
+			List<Object[]> insights = Insight.find("select i.id, i.uniqueId, i.content from Insight i where i.id in (:ids)").bind("ids", ids).fetch();
+			Map<Long, Object[]> insightsById = new HashMap<Long, Object[]>();
+			for (Object[] insight : insights) {
+				insightsById.put((Long) insight[0], insight);
+			}
+			for (Counter counter : topReads) {
+				Object[] insight = insightsById.get(counter.id);
+				if (insight != null) {
+					top20Insights.add(new Object[] { insight[1], insight[2], counter.count });
+				}
+			}
+		}
 		renderArgs.put("top20Insights", top20Insights);
+		renderArgs.put("topsLoadedAt", HeavyHitters.getLoadedAt());
 		
 		// last ten comments
 		List<Comment> comments = Comment.find("order by creationDate desc").fetch(15);
@@ -117,139 +146,81 @@ public class Admin extends Controller {
 		render();
 	}
 	
+	/** the charts show at most this number of points, consecutive days are averaged beyond */
+	private static final int CHART_POINTS = 500;
+	
 	public static void analytics() {
-		renderArgs.put("dailyTotalVote", DailyTotalVote.findAll());
-		renderArgs.put("dailyTotalInsight", DailyTotalInsight.findAll());
-		renderArgs.put("dailyTotalComment", DailyTotalComment.findAll());
-
-		// total users and new users evolution
-		Map<Date, TimeSeriePoint> dailyTotalUsersMap = new HashMap<Date, TimeSeriePoint>();
-		Map<Date, TimeSeriePoint> dailyNewUsersMap = new HashMap<Date, TimeSeriePoint>();
-		List<User> users = User.all().fetch(); // users are supposed to be sorted by creationDate
-		Double totalUser = 0d;
-		Double previousTotalUser = 0d; //used to calculate the size of daily new users
-		for (User user : users) {
-			totalUser++;
-			DateMidnight date = new DateMidnight(user.getCrdate());
-			TimeSeriePoint point = dailyTotalUsersMap.get(date.toDate());
-			if (point == null) {
-				point = new TimeSeriePoint(date.toDate(), totalUser);
-				dailyTotalUsersMap.put(date.toDate(), point);
-				dailyNewUsersMap.put(date.toDate(), new TimeSeriePoint(date.toDate(), totalUser - previousTotalUser));
-				previousTotalUser = totalUser;
-			}
-			point.value = totalUser;
-		}
-		renderArgs.put("dailyNewUsers", dailyNewUsersMap.values()); // be careful, these values are not sorted by date.
-		renderArgs.put("dailyTotalUsers", dailyTotalUsersMap.values());
-		
-		
-		Map<DateMidnight, Set<Long>> uniqueUserVisitsDayMap = new HashMap<DateMidnight, Set<Long>>(); // a map to store the IDs of logged user each day
-		Map<DateMidnight, Integer> activeUserbyDayMap = new HashMap<DateMidnight, Integer>();
-		
-		List<UserListInsightsVisit> list = UserListInsightsVisit.all().fetch(); 
-		DateMidnight firstDate = new DateMidnight( list.get(0).creationDate );
-		for (UserListInsightsVisit v : list) {
-			DateMidnight date = new DateMidnight(v.creationDate);
-			if (!uniqueUserVisitsDayMap.containsKey(date)) {
-				uniqueUserVisitsDayMap.put(date, new HashSet<Long>());
-				activeUserbyDayMap.put(date, 0);
-			}
-			uniqueUserVisitsDayMap.get(date).add(v.user.id);
-			activeUserbyDayMap.put(date, uniqueUserVisitsDayMap.get(date).size());
-		}
+		// computed every night by the AnalyticsJob, up to yesterday
+		DateMidnight yesterday = new DateMidnight().minusDays(1);
+		Date firstDay = DailyRollup.FIRST_DAY.toDate();
+		Date lastDay = yesterday.toDate();
 		
-		List<TimeSeriePoint> activeUsersByDay = new ArrayList<TimeSeriePoint>();
-		List<TimeSeriePoint> activeUsersByDayMinusNewUsersByDay = new ArrayList<TimeSeriePoint>();
-		List<TimeSeriePoint> prctActiveUsersByDay = new ArrayList<TimeSeriePoint>();
-		List<TimeSeriePoint> prctActiveUsersMinusNewUsersByDay = new ArrayList<TimeSeriePoint>();
+		// the three series on the same days, for the chart showing them together
+		renderArgs.put("dailyTotalVote", chart(DailyRollup.serie(DailyTotalVote.class, "voteCount").fill(firstDay, lastDay, 0)));
+		renderArgs.put("dailyTotalInsight", chart(DailyRollup.serie(DailyTotalInsight.class, "insightCount").fill(firstDay, lastDay, 0)));
+		renderArgs.put("dailyTotalComment", chart(DailyRollup.serie(DailyTotalComment.class, "commentCount").fill(firstDay, lastDay, 0)));
+
+		// users evolution
+		renderArgs.put("dailyNewUsers", chart(DailyRollup.serie(DailyUserActivity.class, "newUsers").fill(firstDay, lastDay, 0)));
+		renderArgs.put("dailyTotalUsers", chart(DailyRollup.serie(DailyUserActivity.class, "totalUsers")));
 		
-		Integer totalActiveUserToday;
-		while (!activeUserbyDayMap.isEmpty()) {
-			totalActiveUserToday = activeUserbyDayMap.get(firstDate);
-			activeUserbyDayMap.remove(firstDate);
-			
-			Date datePlusOne = firstDate.plusDays(1).toDate();
-			if(totalActiveUserToday != null && dailyNewUsersMap.get(datePlusOne) != null) {
-				// We don't know why but there is a decay of one day between these data and the dailyNewUsers data. So add a day.
-				activeUsersByDay.add(					new TimeSeriePoint(firstDate.toDate(), totalActiveUserToday.doubleValue() ) );
-				activeUsersByDayMinusNewUsersByDay.add(	new TimeSeriePoint(firstDate.toDate(), totalActiveUserToday - dailyNewUsersMap.get(datePlusOne).value ) );
-				
-				prctActiveUsersByDay.add(				new TimeSeriePoint(firstDate.toDate(), totalActiveUserToday.doubleValue() / dailyTotalUsersMap.get(firstDate.toDate()).value * 100 ) );
-				prctActiveUsersMinusNewUsersByDay.add(	new TimeSeriePoint(firstDate.toDate(), totalActiveUserToday.doubleValue() /(dailyTotalUsersMap.get(firstDate.toDate()).value - dailyNewUsersMap.get(firstDate.toDate()).value) * 100 ) );
-			}
-			firstDate = firstDate.plusDays(1);
-		}
+		DailySerie activeUsers = DailyRollup.serie(DailyUserActivity.class, "activeUsers").fill(firstDay, lastDay, 0);
+		renderArgs.put("activeUsers", 				chart(activeUsers));
+		renderArgs.put("activeUsersWeek", 			chart(activeUsers.rollingMean(7)));
 		
-		renderArgs.put("activeUsers", 				activeUsersByDay									);
-		renderArgs.put("activeUsersWeek", 			TimeSeriePointHelper.smooth( activeUsersByDay, 7) 	);
+		DailySerie returningUsers = DailyRollup.serie(DailyUserActivity.class, "returningUsers").fill(firstDay, lastDay, 0);
+		renderArgs.put("activeUsersMinusNewUsers", 		chart(returningUsers));
+		renderArgs.put("activeUsersMinusNewUsersWeek", 	chart(returningUsers.rollingMean(7)));
 		
-		renderArgs.put("activeUsersMinusNewUsers", 		activeUsersByDayMinusNewUsersByDay);
-		renderArgs.put("activeUsersMinusNewUsersWeek", 	TimeSeriePointHelper.smooth( activeUsersByDayMinusNewUsersByDay, 7) );
+		// distinct users of the last 7 and 30 days, for each day of the last year
+		renderArgs.put("weeklyActiveUsers", chart(DailyVisitSketch.distinctUsersSeries(UserListInsightsVisit.class, 7, yesterday.minusYears(1), yesterday)));
+		renderArgs.put("monthlyActiveUsers", chart(DailyVisitSketch.distinctUsersSeries(UserListInsightsVisit.class, 30, yesterday.minusYears(1), yesterday)));
 		
 		render();
 	}
 	
+	private static List<TimeSeriePoint> chart(DailySerie serie) {
+		return serie.downsample(CHART_POINTS).points();
+	}
+	
 	/**
 	 * Analytics about the returning users.
 	 * @param dateFrom : the date from which to start the experiment. 
 	 * @param daysRange : account creations done between dateFrom and dateFrom + daysRange will be taken into account.
 	 * @param comebackInXXDays : we will measure the number of times a new user came back in the comebackInXXDays days after account creation.
 	 * @param reLogStepHours : after how much hour a new visit is considered as a re-log.
+	 * @param cohortDays : account creations are grouped by cohorts of cohortDays days (7 for signup weeks).
+	 * @param periodDays : the returns are counted by periods of periodDays days after account creation.
 	 */
-	public static void countVisits(@As("yyyy-MM-dd") Date dateFrom, Integer daysRange, Integer comebackInXXDays, Integer reLogStepHours) {
-		if(reLogStepHours == null) {
+	public static void countVisits(@As("yyyy-MM-dd") Date dateFrom, Integer daysRange, Integer comebackInXXDays, Integer reLogStepHours, Integer cohortDays, Integer periodDays) {
+		if(reLogStepHours == null || reLogStepHours < 1) {
 			reLogStepHours = 12;
 		}
-		if(daysRange == null) {
+		if(daysRange == null || daysRange < 1) {
 			daysRange = 15;
 		}
 		if(dateFrom == null) {
-			dateFrom = new DateTime().minusDays(daysRange).toDate();
+			dateFrom = new DateMidnight().minusDays(daysRange).toDate();
 		}
-		if (comebackInXXDays == null) {
+		if (comebackInXXDays == null || comebackInXXDays < 1) {
 			comebackInXXDays = 15;			
 		}
-		Date dateTo = new DateTime(dateFrom).plusDays(daysRange).toDate();
-
-		// select all users who created an accoutn between the two dates
-		List<User> createdAccounts = User.find("crdate > ? and crdate < ?", dateFrom, dateTo).fetch();
-		renderArgs.put("createdAccountsNumber", createdAccounts.size());
-
-		// get all the visits of these users
-		List<UserListInsightsVisit> visits = UserListInsightsVisit.find("creationDate < ? and user.id in (select id from User where crdate > ? and crdate < ?)", new DateTime(dateFrom).plusDays(daysRange + comebackInXXDays ).toDate(), dateFrom, dateTo ).fetch();
-
-		Map<Integer, Integer> count = new HashMap<Integer, Integer>(); // map <number of log, number of users>
-		int countVar = 0; // for a user, count how much time he came
-		Date lastLog = null; // this is the last date a given user came
-		for(User u : createdAccounts) {
-			for(UserListInsightsVisit visit : visits) {
-				if(visit.user == u
-						&& visit.creationDate.after(new DateTime(u.getCrdate()).plusHours(reLogStepHours).toDate()) 
-						&& visit.creationDate.before(new DateTime(u.getCrdate()).plusDays(comebackInXXDays).toDate()) 
-						&& (lastLog == null || visit.creationDate.after(new DateTime(lastLog).plusHours(reLogStepHours).toDate()))) {
-					countVar++;
-					lastLog = visit.creationDate;
-					Integer tmp = count.get(countVar);
-					if(tmp == null) {
-						tmp = 0;
-					}
-					count.put(countVar, tmp + 1 );
-					
-				}
-			}
-			countVar = 0;
-			lastLog = null;
+		if (cohortDays == null || cohortDays < 1) {
+			cohortDays = 7;
 		}
+		if (periodDays == null || periodDays < 1) {
+			periodDays = 1;
+		}
+
+		CohortRetention retention = CohortRetention.compute(dateFrom, (daysRange + cohortDays - 1) / cohortDays, cohortDays, comebackInXXDays, reLogStepHours, periodDays);
+		CohortRetention.Cohort total = retention.total();
+		Date dateTo = retention.to();
 		
+		renderArgs.put("createdAccountsNumber", total.users);
+		renderArgs.put("onceInTheWeek", total.reLogs[0]);
+		renderArgs.put("twiceInTheWeek", total.reLogs.length > 1 ? total.reLogs[1] : 0);
 		
-		renderArgs.put("onceInTheWeek", count.get(1));
-		renderArgs.put("twiceInTheWeek", count.get(2));
-		
-		
-		
-		render(dateFrom, dateTo, comebackInXXDays, count, reLogStepHours);
-		
+		render(dateFrom, dateTo, comebackInXXDays, reLogStepHours, retention, total);
 	}
 
 	/**
@@ -441,8 +412,8 @@ public class Admin extends Controller {
 	public static void updateInsightTrend(String uniqueId) {
 		Insight i = Insight.findByUniqueId(uniqueId);
 		i.buildInsightTrends();
-		// deleting this key in cache insure that the InsightTrends will be reloaded from db
-		Cache.delete("agreeInsightTrendsCache"); 
+		// insure that the InsightTrends will be reloaded from db
+		InsightTrendSeriesCache.invalidate(i.id);
 	}
 	
 	/**
@@ -470,8 +441,8 @@ public class Admin extends Controller {
 			InsightTrend.delete("insight = ? and trendDate = ?", insight, insight.endDate);
 			insight.buildInsightTrends();
 		}
-		// deleting this key in cache insure that the InsightTrends will be reloaded from db
-		Cache.delete("agreeInsightTrendsCache"); 
+		// the trends have been deleted with a query, insure that the InsightTrends will be reloaded from db
+		InsightTrendSeriesCache.clear();
 	}
 	
 	/**
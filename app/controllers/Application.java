@@ -2,13 +2,22 @@ package controllers;
 
 import helpers.ImageHelper;
 import helpers.InSitemap;
+import helpers.autocomplete.Autocomplete;
+import helpers.autocomplete.AutocompleteIndex.Entry;
+import helpers.cache.InsightTrendSeries;
+import helpers.cache.InsightTrendSeriesCache;
+import helpers.cache.PageCache;
+import helpers.cache.PageCache.CachedPage;
+import helpers.cache.SidebarSnapshot;
 
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -18,7 +27,6 @@ import models.Category;
 import models.Comment;
 import models.FacebookFriend;
 import models.FeaturedInsight;
-import models.FeaturedSponsor;
 import models.FeaturedTag;
 import models.Filter;
 import models.Filter.FilterVote;
@@ -26,7 +34,6 @@ import models.Filter.SortBy;
 import models.Insight;
 import models.Insight.InsightResult;
 import models.InsightSuggest;
-import models.InsightTrend;
 import models.Language;
 import models.Message;
 import models.Tag;
@@ -45,7 +52,6 @@ import org.joda.time.DateTime;
 
 import play.Logger;
 import play.Play;
-import play.cache.Cache;
 import play.data.binding.As;
 import play.data.validation.Email;
 import play.data.validation.Equals;
@@ -60,8 +66,10 @@ import play.libs.Crypto;
 import play.libs.Images;
 import play.mvc.Before;
 import play.mvc.Controller;
+import play.mvc.Finally;
 import play.mvc.Router;
 import play.mvc.Router.Route;
+import play.mvc.results.NotModified;
 import play.templates.JavaExtensions;
 import exceptions.CannotVoteTwiceForTheSameInsightException;
 import exceptions.InsightAlreadySharedException;
@@ -96,8 +104,7 @@ public class Application extends Controller {
 	@Before
     static void setLanguage() {
         if(Security.isConnected()) {
-			User currentUser = CurrentUser.getCurrentUser();
-			Lang.change(currentUser.uiLanguage.label);			
+			Lang.change(CurrentUser.getCurrentUserInfo().uiLanguage);
         } 
     }
 	
@@ -116,24 +123,74 @@ public class Application extends Controller {
 				Register.extAuthFirstTimeConnectPage(currentUser.email, currentUser.userName);
 			}
 			
-			renderArgs.put("followedInsightActivities", currentUser.getFavoriteInsightActivity(NUMBER_INSIGHTACTIVITY_INDEXPAGE));
-			renderArgs.put("followedUserActivities", currentUser.getFavoriteUserActivity(NUMBER_USERACTIVITY_INDEXPAGE));
-			renderArgs.put("followedTopicActivities", currentUser.getFavoriteTopicActivity(NUMBER_TOPICACTIVITY_INDEXPAGE));
-			renderArgs.put("advisedUsers", currentUser.findSuggestedFacebookFriends());
+			// the sidebar is rendered from a cached snapshot, rebuilt only when one of its activities has changed
+			SidebarSnapshot sidebar = SidebarSnapshot.get(currentUser, NUMBER_INSIGHTACTIVITY_INDEXPAGE, NUMBER_USERACTIVITY_INDEXPAGE, NUMBER_TOPICACTIVITY_INDEXPAGE);
+			renderArgs.put("followedInsightActivities", sidebar.followedInsightActivities);
+			renderArgs.put("followedUserActivities", sidebar.followedUserActivities);
+			renderArgs.put("followedTopicActivities", sidebar.followedTopicActivities);
+			renderArgs.put("advisedUsers", sidebar.advisedUsers);
 			
 			renderArgs.put("emailConfirmed", currentUser.emailConfirmed);
 			renderArgs.put("invitationsLeft", currentUser.invitationsLeft);
 
 			// if connected, display featured sponsors
-			List<FeaturedSponsor> featuredSponsors = FeaturedSponsor.findActive(currentUser.getWrittingLanguages());
-			if(!featuredSponsors.isEmpty()) {
-				FeaturedSponsor sponsor =  featuredSponsors.get(0);
-				// do not check if already voted, always show.
-				renderArgs.put("featuredSponsor", sponsor);
+			if(sidebar.featuredSponsor != null) {
+				renderArgs.put("featuredSponsor", sidebar.featuredSponsor);
 			}
         }
         
     }
+
+    /**
+     * Anonymous visitors all get the same home, insight, experts and FAQ pages : serve them from the page cache if possible
+     */
+    @Before(only={"insights", "showInsight", "experts", "FAQ"})
+    static void servePageFromCache() {
+    	if (!PageCache.isCacheable(request, session)) {
+    		return;
+    	}
+    	CachedPage page = PageCache.get(request);
+    	if (page == null) {
+    		return;
+    	}
+    	request.args.put("servedFromPageCache", true);
+    	response.setHeader("X-Page-Cache", "hit");
+    	if (PageCache.useETag() && page.etag.equals(request.headers.containsKey("if-none-match") ? request.headers.get("if-none-match").value() : null)) {
+    		throw new NotModified(page.etag);
+    	}
+    	setPageCacheHeaders(page);
+    	renderHtml(page.html);
+    }
+
+    /**
+     * Put the page just rendered for an anonymous visitor in the page cache
+     */
+    @Finally(only={"insights", "showInsight", "experts", "FAQ"})
+    static void putPageInCache() throws UnsupportedEncodingException {
+    	if (request.args.containsKey("servedFromPageCache") || !PageCache.isCacheable(request, session)) {
+    		return;
+    	}
+    	if (response.status == null || response.status != 200 || response.contentType == null || !response.contentType.startsWith("text/html")) {
+    		return;
+    	}
+    	String html = new String(response.out.toByteArray(), response.encoding);
+    	if (!PageCache.isShareable(html, session)) {
+    		Logger.warn("Page %s not cached : it contains the authenticity token of the visitor, use #{beansight.publicForm} instead of #{form}", request.url);
+    		return;
+    	}
+    	CachedPage page = new CachedPage(html);
+    	PageCache.put(request, page);
+    	setPageCacheHeaders(page);
+    }
+
+    private static void setPageCacheHeaders(CachedPage page) {
+    	response.setHeader("Cache-Control", "public, max-age=" + PageCache.maxAge(request));
+    	// the page is not the same for a connected visitor or in another language
+    	response.setHeader("Vary", "Cookie, Accept-Language");
+    	if (PageCache.useETag()) {
+    		response.setHeader("ETag", page.etag);
+    	}
+    }
     
     public static void welcome() {
     	if(!Security.isConnected()) {
@@ -318,7 +375,7 @@ public class Application extends Controller {
 			}
 		}
 		
-		Category category = Category.findById(cat);
+		Category category = Category.findCachedById(cat);
 		if(category != null) {
 			filter.categories.add(category);
 		}
@@ -444,7 +501,7 @@ public class Application extends Controller {
 
 			Category category = null;
 			if( cat != 0 ) {
-				category = Category.findById(cat);
+				category = Category.findCachedById(cat);
 			}
 
 			// display only favorites if asked too and if connected
@@ -516,7 +573,7 @@ public class Application extends Controller {
 		}
 		
 		// Check if the given category Id corresponds to a category
-		Category category = Category.findById(categoryId);
+		Category category = Category.findCachedById(categoryId);
 		if (category == null) {
 			validation.addError("categoryId", "Not a valid Category");
 		}
@@ -570,21 +627,8 @@ public class Application extends Controller {
 		
 		List<Vote> lastVotes = insight.getLastVotes(5);
 		
-		List<InsightTrend> agreeInsightTrends = null;
-		
-		// get the trends list from the cache and put it if wasn't already in cache
-		Map<Long, List<InsightTrend>> agreeInsightTrendsCache = (Map<Long, List<InsightTrend>>)Cache.get("agreeInsightTrendsCache");
-		if (agreeInsightTrendsCache == null) {
-			agreeInsightTrendsCache = new HashMap<Long, List<InsightTrend>>();
-			Cache.add("agreeInsightTrendsCache", agreeInsightTrendsCache);
-		}
-		if (agreeInsightTrendsCache.containsKey(insight.id)) {
-			agreeInsightTrends = agreeInsightTrendsCache.get(insight.id);
-		} else {
-			agreeInsightTrends = InsightTrend.find("select t from InsightTrend t where t.insight = :insight order by t.trendDate").bind("insight", insight).fetch();
-			
-			agreeInsightTrendsCache.put(insight.id, agreeInsightTrends);
-		}
+		// the trends are kept in memory, and invalidated when new trends are built for this insight
+		InsightTrendSeries agreeInsightTrends = InsightTrendSeriesCache.get(insight.id);
 		
         renderArgs.put("lastVotes", lastVotes);
         renderArgs.put("agreeInsightTrends", agreeInsightTrends);
@@ -661,7 +705,7 @@ public class Application extends Controller {
 		filter.user = user;
 		filter.filterVote = filterVote;
 		
-		Category category = Category.findById(cat);
+		Category category = Category.findCachedById(cat);
 		if(category != null) {
 			filter.categories.add(category);
 		}
@@ -932,8 +976,7 @@ public class Application extends Controller {
 	 * Get a list of all the categories of the website
 	 */
 	public static List<Category> getCategories() {
-		List<Category> categories = Category.findAll();
-		return categories;
+		return Category.getAllCategories();
 	}
 
 	@InSitemap(changefreq="monthly", priority=0.3)
@@ -994,6 +1037,8 @@ public class Application extends Controller {
 		user.statusNewsletter = statusNewsletter;
 		
 		user.save();
+		// the featured sponsor of the sidebar depends on the writting languages
+		SidebarSnapshot.invalidate(user.id);
 		
 		Application.settings();
 	}
@@ -1129,11 +1174,12 @@ public class Application extends Controller {
 			insights("trending", 0, "all", null, false);
 		}
 		
-		Category category = Category.findById(cat);
+		Category category = Category.findCachedById(cat);
 		Filter filter = new Filter();
 		if(category != null) {
 			filter.categories.add(category);
 		}
+		addSearchLanguages(filter);
 		InsightResult result = Insight.search(query, from, NUMBER_INSIGHTS_SEARCHPAGE, filter);
 
 		renderArgs.put("count", result.count);
@@ -1147,17 +1193,32 @@ public class Application extends Controller {
 		render(query, category, from);
 	}
 
+	/**
+	 * Only search the insights written in the languages of the connected user, or in the language of the visitor
+	 */
+	private static void addSearchLanguages(Filter filter) {
+		if(Security.isConnected()) {
+			filter.languages.addAll(CurrentUser.getCurrentUser().getWrittingLanguages());
+		} else {
+			Language language = Language.findByLabelOrCreate(Lang.get());
+			if (language != null) {
+				filter.languages.add(language);
+			}
+		}
+	}
+
 	/**
 	 * AJAX : get more formatted results for a search
 	 * 
 	 * @return: the HTML containing the lines to add to the search results
 	 */
 	public static void moreSearch(String query, int from, long cat) {
-		Category category = Category.findById(cat);
+		Category category = Category.findCachedById(cat);
 		Filter filter = new Filter();
 		if(category != null) {
 			filter.categories.add(category);
 		}
+		addSearchLanguages(filter);
 		InsightResult result = Insight.search(query, from, NUMBER_INSIGHTS_SEARCHPAGE, filter);
 
 		renderArgs.put("insights", result.results);
@@ -1262,14 +1323,13 @@ public class Application extends Controller {
 	 * @param term : input text entered by the user
 	 */
 	public static void favoriteUserSuggest(String term) {
-		User currentUser = CurrentUser.getCurrentUser();
-		List<User> users = User.find( 
-				"select u from User u " 
+		List<Long> followedUserIds = User.find(
+				"select u.id from User u "
 				+ "join u.followers f "
-				+ "where f.id = :id and LOWER(u.userName) like :userName")
-				.bind("id", currentUser.id)
-				.bind("userName", "%" + term.toLowerCase() + "%")
-				.fetch(NUMBER_SUGGESTED_USERS);
+				+ "where f.id = :id")
+				.bind("id", CurrentUser.getCurrentUserId())
+				.fetch();
+		List<Entry> users = Autocomplete.users.suggest(term, NUMBER_SUGGESTED_USERS, new HashSet<Long>(followedUserIds));
 		render(users);
 	}
 	
@@ -1281,7 +1341,7 @@ public class Application extends Controller {
 		if (term == null) {
 			error("term is null");
 		}
-		List <Tag> tags = Tag.find( "byLabelLike", "%" + term.toLowerCase() + "%").fetch(NUMBER_SUGGESTED_TAGS);
+		List<Entry> tags = Autocomplete.tags.suggest(term, NUMBER_SUGGESTED_TAGS);
 		render(tags);
 	}
 	
@@ -1,5 +1,7 @@
 package controllers;
 
+import helpers.cache.CurrentUserInfo;
+
 import java.net.URL;
 import java.util.List;
 
@@ -10,10 +12,36 @@ import exceptions.CannotVoteForAnInsightYouOwnException;
 import models.Insight;
 import models.User;
 import play.mvc.Controller;
+import play.mvc.Http.Request;
 
 public class CurrentUser extends Controller {
 
+	/** keys of the request args where the user resolved for this request is kept */
+	private static final String CURRENT_USER_ARG = "currentUser";
+	private static final String CURRENT_USER_CONNECTED_ARG = "currentUser.connected";
+
+	/**
+	 * @return the connected user, resolved only once per request
+	 */
     public static User getCurrentUser() {
+    	Request current = Request.current();
+    	String connected = Security.connected();
+    	if (current != null && current.args.containsKey(CURRENT_USER_ARG)) {
+    		// only reuse it if the user hasn't logged in or out since it has been resolved
+    		Object resolvedFor = current.args.get(CURRENT_USER_CONNECTED_ARG);
+    		if (resolvedFor == null ? connected == null : resolvedFor.equals(connected)) {
+    			return (User)current.args.get(CURRENT_USER_ARG);
+    		}
+    	}
+    	User user = findCurrentUser();
+    	if (current != null) {
+    		current.args.put(CURRENT_USER_ARG, user);
+    		current.args.put(CURRENT_USER_CONNECTED_ARG, connected);
+    	}
+    	return user;
+    }
+
+    private static User findCurrentUser() {
     	if ( session.get("userId")!=null) {
             User u = User.findById(new Long(session.get("userId")));
             // email should be the same as the one in the cookie
@@ -30,30 +58,56 @@ public class CurrentUser extends Controller {
         	User user = User.findByFacebookUserId(new Long(session.get("facebookUserId")));
             session.put("userId", user.getId());
             return user;
-        }        
+        }
+        // nobody is connected, no need to look for it
+        if (Security.connected() == null) {
+        	return null;
+        }
 //        return User.find("byEmail", Security.connected()).first();
         User user = User.findByEmail(Security.connected());
         if (user != null && !session.contains("userId")) {
         	session.put("userId", user.getId());
         }
-        
+
         return user;
     }
-    
+
+    /**
+     * @return the fields of the connected user displayed on every page, from the cache if possible. null if not connected.
+     */
+    public static CurrentUserInfo getCurrentUserInfo() {
+    	if (session.get("userId") != null) {
+    		CurrentUserInfo info = CurrentUserInfo.get(new Long(session.get("userId")));
+            // email should be the same as the one in the cookie
+    		if (info != null && info.email != null && info.email.equalsIgnoreCase(Security.connected())) {
+    			return info;
+    		}
+    	}
+    	User user = getCurrentUser();
+    	if (user == null) {
+    		return null;
+    	}
+    	return CurrentUserInfo.put(user);
+    }
+
+    public static Long getCurrentUserId() {
+    	return getCurrentUserInfo().id;
+    }
+
     public static String getCurrentUserName() {
-    	return getCurrentUser().userName;
+    	return getCurrentUserInfo().userName;
     }
-    
+
     public static String getCurrentUserEmail() {
-    	return getCurrentUser().email;
+    	return getCurrentUserInfo().email;
     }
-    
+
     public static String getCurrentUserHashCode() {
-    	return getCurrentUser().avatarHashCode();
+    	return getCurrentUserInfo().avatarHashCode;
     }
-    
+
     public static boolean isAdmin() {
-    	return getCurrentUser().isAdmin;
+    	return getCurrentUserInfo().isAdmin;
     }
-    
-}
\ No newline at end of file
+
+}
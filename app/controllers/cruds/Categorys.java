@@ -1,5 +1,7 @@
 package controllers.cruds;
 
+import helpers.cache.ReferenceData;
+import play.mvc.After;
 import play.mvc.With;
 import controllers.CRUD;
 import controllers.Check;
@@ -8,4 +10,12 @@ import controllers.Secure;
 @Check("admin")
 @With(Secure.class)
 public class Categorys extends CRUD {
+
+	/**
+	 * categories are part of the reference data kept in memory, reload it on every server once saved
+	 */
+	@After(only={"create", "save", "delete"})
+	static void reloadReferenceData() {
+		ReferenceData.changed();
+	}
 }
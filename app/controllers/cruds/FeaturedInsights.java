@@ -1,5 +1,6 @@
 package controllers.cruds;
  
+import helpers.cache.ReferenceData;
 import controllers.CRUD;
 import controllers.Check;
 import controllers.Secure;
@@ -9,4 +10,12 @@ import play.mvc.*;
 @Check("admin")
 @With(Secure.class)
 public class FeaturedInsights extends CRUD {
+
+	/**
+	 * the periods of the featured insights are part of the reference data kept in memory, reload it on every server once saved
+	 */
+	@After(only={"create", "save", "delete"})
+	static void reloadReferenceData() {
+		ReferenceData.changed();
+	}
 }
@@ -0,0 +1,92 @@
+package helpers.analytics;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.hibernate.EntityMode;
+import org.hibernate.Session;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.engine.SessionImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.type.Type;
+
+import play.db.DB;
+import play.db.jpa.JPA;
+import play.db.jpa.Model;
+
+/**
+ * Inserts new entities (visits, daily analytics...) with JDBC batches of inserts, one statement per entity class,
+ * without going through the persistence context.
+ *
+ * The insert statements are built from the Hibernate mapping of the entities, as JPA would write them
+ * (but JPA can't batch inserts whose id is generated by the database). The ids of the inserted entities are not set.
+ */
+public class BatchInsert {
+
+	/** the statements are executed by batches of this number of rows */
+	private static final int BATCH_SIZE = 500;
+
+	public static void insert(Collection<? extends Model> entities) throws SQLException {
+		Session session = (Session) JPA.em().getDelegate();
+		SessionFactoryImplementor factory = (SessionFactoryImplementor) session.getSessionFactory();
+		Connection connection = DB.getConnection();
+		Map<Class, PreparedStatement> statements = new HashMap<Class, PreparedStatement>();
+		Map<Class, Integer> batchSizes = new HashMap<Class, Integer>();
+		try {
+			for (Model entity : entities) {
+				AbstractEntityPersister persister = (AbstractEntityPersister) factory.getEntityPersister(entity.getClass().getName());
+				PreparedStatement statement = statements.get(entity.getClass());
+				if (statement == null) {
+					statement = connection.prepareStatement(insert(persister));
+					statements.put(entity.getClass(), statement);
+					batchSizes.put(entity.getClass(), 0);
+				}
+				// the values are bound by the Hibernate types: relations are written as the id of the related object
+				Object[] values = persister.getPropertyValues(entity, EntityMode.POJO);
+				Type[] types = persister.getPropertyTypes();
+				int index = 1;
+				for (int i = 0; i < types.length; i++) {
+					types[i].nullSafeSet(statement, values[i], index, (SessionImplementor) session);
+					index += types[i].getColumnSpan(factory);
+				}
+				statement.addBatch();
+				int batchSize = batchSizes.get(entity.getClass()) + 1;
+				if (batchSize == BATCH_SIZE) {
+					statement.executeBatch();
+					batchSize = 0;
+				}
+				batchSizes.put(entity.getClass(), batchSize);
+			}
+			for (PreparedStatement statement : statements.values()) {
+				statement.executeBatch();
+			}
+		} finally {
+			for (PreparedStatement statement : statements.values()) {
+				statement.close();
+			}
+		}
+	}
+
+	/**
+	 * @return insert into the table of the entity, of all the columns but the generated id
+	 */
+	private static String insert(AbstractEntityPersister persister) {
+		StringBuilder columns = new StringBuilder();
+		StringBuilder parameters = new StringBuilder();
+		for (int i = 0; i < persister.getPropertyNames().length; i++) {
+			for (String column : persister.getPropertyColumnNames(i)) {
+				if (columns.length() > 0) {
+					columns.append(", ");
+					parameters.append(", ");
+				}
+				columns.append(column);
+				parameters.append('?');
+			}
+		}
+		return "insert into " + persister.getTableName() + " (" + columns + ") values (" + parameters + ")";
+	}
+}
@@ -0,0 +1,185 @@
+package helpers.analytics;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import play.db.jpa.JPA;
+
+/**
+ * Retention of the users grouped by cohorts of signup (the users who created their account the same week for example):
+ * how many of them re-logged once, twice... in the days following their signup, and in which period after it.
+ *
+ * A visit is a re-log when it is more than reLogStepHours after the signup and after the previous re-log,
+ * and before the end of the return window. Someone who re-logged twice also re-logged once.
+ *
+ * The visits are read sorted by user and date, by chunks of users, and counted in one pass.
+ */
+public class CohortRetention {
+
+	private static final long HOUR = 3600L * 1000;
+	private static final long DAY = 24 * HOUR;
+
+	/** number of users whose visits are read by one query */
+	private static final int USERS_PER_QUERY = 500;
+
+	/** the users who created their account in the same cohortDays days */
+	public static class Cohort {
+		public final Date from;
+		public final Date to;
+
+		/** accounts created in this cohort */
+		public int users;
+
+		/** reLogs[n - 1] : users who re-logged at least n times */
+		public final int[] reLogs;
+
+		/** returned[p] : users who re-logged during the period p after their signup (days p * periodDays to (p + 1) * periodDays) */
+		public final int[] returned;
+
+		Cohort(Date from, Date to, int maxReLogs, int periods) {
+			this.from = from;
+			this.to = to;
+			this.reLogs = new int[maxReLogs];
+			this.returned = new int[periods];
+		}
+
+		/**
+		 * @return the percentage of the users of this cohort, 0 if the cohort is empty
+		 */
+		public int percent(int count) {
+			return users == 0 ? 0 : Math.round(100f * count / users);
+		}
+	}
+
+	public final Date from;
+	public final int cohortDays;
+	public final int comebackDays;
+	public final int reLogStepHours;
+	public final int periodDays;
+	public final List<Cohort> cohorts = new ArrayList<Cohort>();
+
+	private final long reLogStep;
+
+	// state of the current user
+	private Cohort cohort;
+	private long signup;
+	private long lastLog;
+	private int reLogCount;
+	private int lastPeriod;
+
+	/**
+	 * @param from : signup date of the first cohort
+	 * @param cohortsNumber : number of cohorts following from
+	 * @param cohortDays : days of signup grouped in a cohort, 7 for signup weeks
+	 * @param comebackDays : the return window, days after the signup in which the re-logs are counted
+	 * @param reLogStepHours : after how much hour a new visit is considered as a re-log
+	 * @param periodDays : days of the periods of the retention matrix
+	 */
+	public CohortRetention(Date from, int cohortsNumber, int cohortDays, int comebackDays, int reLogStepHours, int periodDays) {
+		this.from = from;
+		this.cohortDays = cohortDays;
+		this.comebackDays = comebackDays;
+		this.reLogStepHours = reLogStepHours;
+		this.periodDays = periodDays;
+		this.reLogStep = reLogStepHours * HOUR;
+		// the re-logs are at least reLogStep apart, in a window of comebackDays
+		int maxReLogs = (int) (comebackDays * DAY / reLogStep) + 1;
+		int periods = (comebackDays + periodDays - 1) / periodDays;
+		for (int i = 0; i < cohortsNumber; i++) {
+			cohorts.add(new Cohort(new Date(from.getTime() + i * cohortDays * DAY), new Date(from.getTime() + (i + 1) * cohortDays * DAY), maxReLogs, periods));
+		}
+	}
+
+	/**
+	 * @return the end of the signups of the last cohort
+	 */
+	public Date to() {
+		return cohorts.isEmpty() ? from : cohorts.get(cohorts.size() - 1).to;
+	}
+
+	/**
+	 * Starts counting the visits of a new user, the visits given to visit() are then his own until the next call
+	 */
+	public void user(Date signupDate) {
+		signup = signupDate.getTime();
+		int index = (int) ((signup - from.getTime()) / (cohortDays * DAY));
+		cohort = signup < from.getTime() || index >= cohorts.size() ? null : cohorts.get(index);
+		if (cohort != null) {
+			cohort.users++;
+		}
+		lastLog = signup;
+		reLogCount = 0;
+		lastPeriod = -1;
+	}
+
+	/**
+	 * Counts a visit of the current user, his visits must be given sorted by date
+	 */
+	public void visit(Date date) {
+		long time = date.getTime();
+		if (cohort == null || time <= lastLog + reLogStep || time >= signup + comebackDays * DAY) {
+			return;
+		}
+		lastLog = time;
+		cohort.reLogs[reLogCount++]++;
+		int period = (int) ((time - signup) / (periodDays * DAY));
+		if (period != lastPeriod) {
+			cohort.returned[period]++;
+			lastPeriod = period;
+		}
+	}
+
+	/**
+	 * @return all the cohorts summed up
+	 */
+	public Cohort total() {
+		Cohort total = new Cohort(from, to(), cohorts.get(0).reLogs.length, cohorts.get(0).returned.length);
+		for (Cohort c : cohorts) {
+			total.users += c.users;
+			for (int i = 0; i < total.reLogs.length; i++) {
+				total.reLogs[i] += c.reLogs[i];
+			}
+			for (int i = 0; i < total.returned.length; i++) {
+				total.returned[i] += c.returned[i];
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * @return the retention of the users who created their account in the cohorts, from their visits of the insights list
+	 */
+	public static CohortRetention compute(Date from, int cohortsNumber, int cohortDays, int comebackDays, int reLogStepHours, int periodDays) {
+		CohortRetention retention = new CohortRetention(from, cohortsNumber, cohortDays, comebackDays, reLogStepHours, periodDays);
+		List<Object[]> users = JPA.em().createQuery("select u.id, u.crdate from User u " +
+				"where u.crdate >= :from and u.crdate < :to order by u.id")
+				.setParameter("from", from)
+				.setParameter("to", retention.to())
+				.getResultList();
+		Date visitsTo = new Date(retention.to().getTime() + comebackDays * DAY);
+		for (int first = 0; first < users.size(); first += USERS_PER_QUERY) {
+			List<Object[]> chunk = users.subList(first, Math.min(first + USERS_PER_QUERY, users.size()));
+			List<Long> ids = new ArrayList<Long>(chunk.size());
+			for (Object[] user : chunk) {
+				ids.add((Long) user[0]);
+			}
+			List<Object[]> visits = JPA.em().createQuery("select v.user.id, v.creationDate from UserListInsightsVisit v " +
+					"where v.user.id in (:ids) and v.creationDate > :from and v.creationDate < :to " +
+					"order by v.user.id, v.creationDate")
+					.setParameter("ids", ids)
+					.setParameter("from", from)
+					.setParameter("to", visitsTo)
+					.getResultList();
+			// both lists are sorted by user id
+			int v = 0;
+			for (Object[] user : chunk) {
+				retention.user((Date) user[1]);
+				for (; v < visits.size() && visits.get(v)[0].equals(user[0]); v++) {
+					retention.visit((Date) visits.get(v)[1]);
+				}
+			}
+		}
+		return retention;
+	}
+}
@@ -0,0 +1,168 @@
+package helpers.analytics;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import org.joda.time.DateMidnight;
+
+import play.db.jpa.JPA;
+import play.db.jpa.Model;
+
+/**
+ * Computes the daily analytics (one row per day, or per day and user...) of all the missing days,
+ * with one query per metric grouped by day instead of one query per day.
+ *
+ * The analytics with a row for every day (DailyTotal*, DailyUserActivity) are computed for every day without a row,
+ * see missingDays: a hole left before the last computed day (rows deleted to be computed again...) is filled by the next run.
+ * The analytics by user or insight have no row for the days without activity, so a hole in them can't be told apart from
+ * a day without activity: only the days following the last computed one are computed, see firstMissingDay.
+ * To compute them again from a day, delete their rows from this day.
+ */
+public class DailyRollup {
+
+	/** there is no prediction before 26 january 2011 */
+	public static final DateMidnight FIRST_DAY = new DateMidnight(2011, 1, 26);
+
+	/** the count of a day, and of a key (user id, insight id...) if the query selects one */
+	public static class DailyCount {
+		public final Date day;
+		public final Long key;
+		public final long count;
+
+		DailyCount(Date day, Long key, long count) {
+			this.day = day;
+			this.key = key;
+			this.count = count;
+		}
+	}
+
+	/** consecutive days, first and last included */
+	public static class DayRange {
+		public final DateMidnight first;
+		public final DateMidnight last;
+
+		DayRange(DateMidnight first, DateMidnight last) {
+			this.first = first;
+			this.last = last;
+		}
+	}
+
+	/**
+	 * @param rollup : entity of the daily analytics with a row for every day, with a forDate field
+	 * @return the ranges of the days from FIRST_DAY to lastDay without any row, in order
+	 */
+	public static List<DayRange> missingDays(Class<? extends Model> rollup, DateMidnight lastDay) {
+		List<Date> computed = JPA.em()
+				.createQuery("select distinct r.forDate from " + rollup.getSimpleName() + " r where r.forDate >= :firstDay and r.forDate <= :lastDay order by r.forDate")
+				.setParameter("firstDay", FIRST_DAY.toDate())
+				.setParameter("lastDay", lastDay.toDate())
+				.getResultList();
+		return missingDays(computed, FIRST_DAY, lastDay);
+	}
+
+	/**
+	 * @param computed : the computed days, in order
+	 * @return the ranges of the days from firstDay to lastDay which are not computed, in order
+	 */
+	public static List<DayRange> missingDays(List<Date> computed, DateMidnight firstDay, DateMidnight lastDay) {
+		List<DayRange> missing = new ArrayList<DayRange>();
+		Iterator<Date> days = computed.iterator();
+		DateMidnight nextComputed = days.hasNext() ? new DateMidnight(days.next()) : null;
+		DateMidnight missingFrom = null;
+		for (DateMidnight day = firstDay; !day.isAfter(lastDay); day = day.plusDays(1)) {
+			while (nextComputed != null && nextComputed.isBefore(day)) {
+				nextComputed = days.hasNext() ? new DateMidnight(days.next()) : null;
+			}
+			if (day.equals(nextComputed)) {
+				if (missingFrom != null) {
+					missing.add(new DayRange(missingFrom, day.minusDays(1)));
+					missingFrom = null;
+				}
+			} else if (missingFrom == null) {
+				missingFrom = day;
+			}
+		}
+		if (missingFrom != null) {
+			missing.add(new DayRange(missingFrom, lastDay));
+		}
+		return missing;
+	}
+
+	/**
+	 * @param rollup : entity of the daily analytics, with a forDate field
+	 * @return the day following the last one computed for this analytics (FIRST_DAY if none), null if all the days up to lastDay are computed
+	 */
+	public static DateMidnight firstMissingDay(Class<? extends Model> rollup, DateMidnight lastDay) {
+		Date lastComputed = (Date) JPA.em()
+				.createQuery("select max(r.forDate) from " + rollup.getSimpleName() + " r where r.forDate <= :lastDay")
+				.setParameter("lastDay", lastDay.toDate())
+				.getSingleResult();
+		DateMidnight firstMissing = lastComputed == null ? FIRST_DAY : new DateMidnight(lastComputed).plusDays(1);
+		return firstMissing.isAfter(lastDay) ? null : firstMissing;
+	}
+
+	/**
+	 * @param query : selects year, month and day of a date, optionally a key, and a count, grouped by them.
+	 * The date must be between the :from and :to parameters.
+	 * @return the counts of the days from firstDay to lastDay (included), days without any count are not returned
+	 */
+	public static List<DailyCount> countByDay(String query, DateMidnight firstDay, DateMidnight lastDay) {
+		List<Object[]> rows = rowsByDay(query, firstDay, lastDay);
+		List<DailyCount> counts = new ArrayList<DailyCount>(rows.size());
+		for (Object[] row : rows) {
+			Long key = row.length > 4 ? ((Number) row[3]).longValue() : null;
+			counts.add(new DailyCount(day(row), key, ((Number) row[row.length - 1]).longValue()));
+		}
+		return counts;
+	}
+
+	/**
+	 * @param query : selects year, month and day of a date first, and then any value, grouped by them.
+	 * The date must be between the :from and :to parameters.
+	 * @return the rows of the days from firstDay to lastDay (included), see day(row)
+	 */
+	public static List<Object[]> rowsByDay(String query, DateMidnight firstDay, DateMidnight lastDay) {
+		return JPA.em().createQuery(query)
+				.setParameter("from", firstDay.toDate())
+				.setParameter("to", lastDay.plusDays(1).toDate())
+				.getResultList();
+	}
+
+	/**
+	 * @return the day of a row selecting year, month and day first
+	 */
+	public static Date day(Object[] row) {
+		return new DateMidnight(((Number) row[0]).intValue(), ((Number) row[1]).intValue(), ((Number) row[2]).intValue()).toDate();
+	}
+
+	/**
+	 * @param rollup : entity of the daily analytics, with a forDate field
+	 * @param field : numeric field of the rollup
+	 * @return the values of this field, by day
+	 */
+	public static DailySerie serie(Class<? extends Model> rollup, String field) {
+		List<Object[]> rows = JPA.em()
+				.createQuery("select r.forDate, r." + field + " from " + rollup.getSimpleName() + " r order by r.forDate")
+				.getResultList();
+		DailySerie serie = new DailySerie(rows.size());
+		for (Object[] row : rows) {
+			serie.add((Date) row[0], ((Number) row[1]).doubleValue());
+		}
+		return serie;
+	}
+
+	/**
+	 * Inserts the computed rows, with JDBC batches (see BatchInsert)
+	 */
+	public static void save(Collection<? extends Model> rollups) {
+		try {
+			BatchInsert.insert(rollups);
+		} catch (SQLException e) {
+			throw new RuntimeException("Cannot insert the daily analytics", e);
+		}
+	}
+}
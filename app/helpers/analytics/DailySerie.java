@@ -0,0 +1,225 @@
+package helpers.analytics;
+
+import helpers.TimeSeriePoint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.joda.time.Days;
+import org.joda.time.LocalDate;
+
+/**
+ * A value per day (votes of the day, active users...), kept as arrays of days and values sorted by day.
+ *
+ * The operators (rolling sums and means, rates, gap filling and downsampling) go through the days once
+ * and return a new serie, so that a chart of several years of days stays cheap to compute.
+ * A day added twice keeps the last value added (the daily analytics may have been computed twice for a day).
+ */
+public class DailySerie {
+
+	private static final LocalDate EPOCH = new LocalDate(1970, 1, 1);
+
+	/** days since 1970-01-01 */
+	private int[] days;
+	private double[] values;
+	private int size;
+
+	/** false when a day has been added before the previous one, or is the same as a previous one */
+	private boolean sorted = true;
+
+	public DailySerie() {
+		this(16);
+	}
+
+	public DailySerie(int capacity) {
+		days = new int[Math.max(capacity, 1)];
+		values = new double[Math.max(capacity, 1)];
+	}
+
+	public void add(Date day, double value) {
+		add(dayNumber(day), value);
+	}
+
+	private void add(int day, double value) {
+		if (size == days.length) {
+			days = Arrays.copyOf(days, size * 2);
+			values = Arrays.copyOf(values, size * 2);
+		}
+		if (sorted && size > 0 && day == days[size - 1]) {
+			values[size - 1] = value;
+			return;
+		}
+		if (size > 0 && day < days[size - 1]) {
+			sorted = false;
+		}
+		days[size] = day;
+		values[size] = value;
+		size++;
+	}
+
+	public int size() {
+		sort();
+		return size;
+	}
+
+	public Date date(int i) {
+		sort();
+		return toDate(days[i]);
+	}
+
+	public double value(int i) {
+		sort();
+		return values[i];
+	}
+
+	/**
+	 * @return the points of the serie, for the charts
+	 */
+	public List<TimeSeriePoint> points() {
+		sort();
+		List<TimeSeriePoint> points = new ArrayList<TimeSeriePoint>(size);
+		for (int i = 0; i < size; i++) {
+			points.add(new TimeSeriePoint(toDate(days[i]), values[i]));
+		}
+		return points;
+	}
+
+	/**
+	 * @return the serie with a point for every day from first to last (included), the missing days having the given value
+	 */
+	public DailySerie fill(Date first, Date last, double missing) {
+		sort();
+		int firstDay = dayNumber(first);
+		int lastDay = dayNumber(last);
+		DailySerie filled = new DailySerie(lastDay - firstDay + 1);
+		int i = 0;
+		while (i < size && days[i] < firstDay) {
+			i++;
+		}
+		for (int day = firstDay; day <= lastDay; day++) {
+			if (i < size && days[i] == day) {
+				filled.add(day, values[i++]);
+			} else {
+				filled.add(day, missing);
+			}
+		}
+		return filled;
+	}
+
+	/**
+	 * @return the serie with a point for every day between its first and last ones, the missing days having the given value
+	 */
+	public DailySerie fillGaps(double missing) {
+		sort();
+		return size == 0 ? this : fill(toDate(days[0]), toDate(days[size - 1]), missing);
+	}
+
+	/**
+	 * @return for each day, the sum of the values of the windowDays days ending this day
+	 */
+	public DailySerie rollingSum(int windowDays) {
+		sort();
+		DailySerie sums = new DailySerie(size);
+		double sum = 0;
+		int start = 0;
+		for (int i = 0; i < size; i++) {
+			sum += values[i];
+			while (days[start] <= days[i] - windowDays) {
+				sum -= values[start++];
+			}
+			sums.add(days[i], sum);
+		}
+		return sums;
+	}
+
+	/**
+	 * @return for each day, the mean of the windowDays days ending this day, missing days counting as 0.
+	 * The first days of the serie are the mean of the days since the first one.
+	 */
+	public DailySerie rollingMean(int windowDays) {
+		DailySerie means = rollingSum(windowDays);
+		for (int i = 0; i < means.size; i++) {
+			means.values[i] /= Math.min(windowDays, means.days[i] - means.days[0] + 1);
+		}
+		return means;
+	}
+
+	/**
+	 * @return for each day, the change of the value per day since windowDays days before
+	 * (new users per day from the total of users for example). The first day of the serie has no rate.
+	 */
+	public DailySerie rate(int windowDays) {
+		sort();
+		DailySerie rates = new DailySerie(size);
+		int from = 0;
+		for (int i = 1; i < size; i++) {
+			// the last day at least windowDays days before, or the first one
+			while (from + 1 < i && days[from + 1] <= days[i] - windowDays) {
+				from++;
+			}
+			rates.add(days[i], (values[i] - values[from]) / (days[i] - days[from]));
+		}
+		return rates;
+	}
+
+	/**
+	 * @return the serie with at most maxPoints points, each point being the mean of consecutive points
+	 * (at the last day of them). Series filled on the same days are downsampled on the same days.
+	 */
+	public DailySerie downsample(int maxPoints) {
+		sort();
+		if (size <= maxPoints) {
+			return this;
+		}
+		int bucket = (size + maxPoints - 1) / maxPoints;
+		DailySerie downsampled = new DailySerie(maxPoints);
+		for (int start = 0; start < size; start += bucket) {
+			int end = Math.min(start + bucket, size);
+			double sum = 0;
+			for (int i = start; i < end; i++) {
+				sum += values[i];
+			}
+			downsampled.add(days[end - 1], sum / (end - start));
+		}
+		return downsampled;
+	}
+
+	private void sort() {
+		if (sorted) {
+			return;
+		}
+		// the day and the index of each point in a long, to sort them without boxing
+		long[] keys = new long[size];
+		for (int i = 0; i < size; i++) {
+			keys[i] = ((long) days[i] << 32) | i;
+		}
+		Arrays.sort(keys);
+		int[] sortedDays = new int[days.length];
+		double[] sortedValues = new double[values.length];
+		int sortedSize = 0;
+		for (int i = 0; i < size; i++) {
+			int index = (int) keys[i];
+			if (sortedSize > 0 && sortedDays[sortedSize - 1] == days[index]) {
+				// same day, added later
+				sortedValues[sortedSize - 1] = values[index];
+			} else {
+				sortedDays[sortedSize] = days[index];
+				sortedValues[sortedSize++] = values[index];
+			}
+		}
+		days = sortedDays;
+		values = sortedValues;
+		size = sortedSize;
+		sorted = true;
+	}
+
+	private static int dayNumber(Date date) {
+		return Days.daysBetween(EPOCH, new LocalDate(date)).getDays();
+	}
+
+	private static Date toDate(int day) {
+		return EPOCH.plusDays(day).toDateMidnight().toDate();
+	}
+}
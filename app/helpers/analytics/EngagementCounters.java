@@ -0,0 +1,89 @@
+package helpers.analytics;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import jobs.EngagementWriterJob;
+
+import org.joda.time.DateMidnight;
+
+/**
+ * Engagement of the insights (views, votes, comments) counted in memory as it happens, per insight and day,
+ * and added to the InsightDailyEngagement table by {@link EngagementWriterJob}.
+ */
+public class EngagementCounters {
+
+	public enum Engagement {
+		VIEW, AGREE, DISAGREE, VOTE_CHANGE, COMMENT
+	}
+
+	/** an insight and a day */
+	public static class Key {
+		public final long insightId;
+		public final Date day;
+
+		Key(long insightId, Date day) {
+			this.insightId = insightId;
+			this.day = day;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Key && ((Key) o).insightId == insightId && ((Key) o).day.getTime() == day.getTime();
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (insightId ^ (insightId >>> 32)) * 31 + day.hashCode();
+		}
+	}
+
+	/** the engagement waiting to be written by the EngagementWriterJob */
+	public static final EngagementCounters PENDING = new EngagementCounters();
+
+	/** insight and day -> count of each event, indexed by Engagement.ordinal() */
+	private Map<Key, long[]> counters = new HashMap<Key, long[]>();
+
+	/**
+	 * Counts an event of today
+	 */
+	public void increment(long insightId, Engagement engagement) {
+		increment(insightId, engagement, new DateMidnight().toDate());
+	}
+
+	public synchronized void increment(long insightId, Engagement engagement, Date day) {
+		Key key = new Key(insightId, day);
+		long[] counts = counters.get(key);
+		if (counts == null) {
+			counts = new long[Engagement.values().length];
+			counters.put(key, counts);
+		}
+		counts[engagement.ordinal()]++;
+	}
+
+	/**
+	 * @return the counts since the previous call, removed from the counters
+	 */
+	public synchronized Map<Key, long[]> drain() {
+		Map<Key, long[]> drained = counters;
+		counters = new HashMap<Key, long[]>();
+		return drained;
+	}
+
+	/**
+	 * Adds back counts that have been drained but not written, to be drained again
+	 */
+	public synchronized void restore(Map<Key, long[]> drained) {
+		for (Map.Entry<Key, long[]> restored : drained.entrySet()) {
+			long[] counts = counters.get(restored.getKey());
+			if (counts == null) {
+				counters.put(restored.getKey(), restored.getValue());
+			} else {
+				for (int i = 0; i < counts.length; i++) {
+					counts[i] += restored.getValue()[i];
+				}
+			}
+		}
+	}
+}
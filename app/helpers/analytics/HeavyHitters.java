@@ -0,0 +1,187 @@
+package helpers.analytics;
+
+import helpers.analytics.SpaceSaving.Counter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.joda.time.DateMidnight;
+import org.joda.time.Days;
+import org.joda.time.LocalDate;
+
+import play.Logger;
+import play.db.jpa.JPA;
+
+/**
+ * Rolling tops of the last days (most read insights, best voters and creators), fed by the events as they happen:
+ * one {@link SpaceSaving} summary per day, so that a top is merged from a fixed number of counters
+ * whatever the number of visits or votes.
+ *
+ * The window is today and the WINDOW_DAYS previous days. The summaries are in memory, and each application server
+ * counts the events it serves, before their transaction commits. So they are reloaded from the database, which has
+ * the committed events of all the servers, when the application starts and then every 10 minutes (HeavyHittersReloadJob):
+ * a top is exact as of its last reload, plus the events served by this server since.
+ *
+ * A reload reads the daily rollups (UserInsightDailyVote, UserInsightDailyCreation, InsightDailyEngagement), and only
+ * counts the raw events of the days not rolled up yet (today for the votes and the creations). Only the CAPACITY
+ * largest counts of each day are read, most frequent first, so that the reloaded counters are exact.
+ */
+public class HeavyHitters {
+
+	public static final int WINDOW_DAYS = 7;
+
+	/** counters per day, much more than the size of the tops, for their counts to be exact in practice */
+	private static final int CAPACITY = 200;
+
+	private static final LocalDate EPOCH = new LocalDate(1970, 1, 1);
+
+	/** insight ids, by UserInsightVisit */
+	public static final HeavyHitters READ_INSIGHTS = new HeavyHitters();
+
+	/** user ids, by Vote */
+	public static final HeavyHitters VOTERS = new HeavyHitters();
+
+	/** user ids, by created Insight */
+	public static final HeavyHitters CREATORS = new HeavyHitters();
+
+	/** when the tops have been reloaded from the database for the last time, null if never */
+	private static volatile Date loadedAt;
+
+	// ring of the summaries of the days of the window, and the day of each one
+	private final SpaceSaving[] summaries = new SpaceSaving[WINDOW_DAYS + 1];
+	private final int[] days = new int[WINDOW_DAYS + 1];
+
+	public void offer(long id) {
+		offer(id, 1, new LocalDate());
+	}
+
+	public synchronized void offer(long id, long weight, LocalDate date) {
+		int day = Days.daysBetween(EPOCH, date).getDays();
+		int slot = day % summaries.length;
+		if (summaries[slot] == null || days[slot] != day) {
+			if (summaries[slot] != null && days[slot] > day) {
+				// older than the window
+				return;
+			}
+			summaries[slot] = new SpaceSaving(CAPACITY);
+			days[slot] = day;
+		}
+		summaries[slot].offer(id, weight);
+	}
+
+	/**
+	 * @return the k most frequent ids of the window, the most frequent first
+	 */
+	public List<Counter> top(int k) {
+		return top(k, new LocalDate());
+	}
+
+	public List<Counter> top(int k, LocalDate today) {
+		int lastDay = Days.daysBetween(EPOCH, today).getDays();
+		List<SpaceSaving> window = new ArrayList<SpaceSaving>(summaries.length);
+		synchronized (this) {
+			for (int i = 0; i < summaries.length; i++) {
+				if (summaries[i] != null && days[i] <= lastDay && days[i] >= lastDay - WINDOW_DAYS) {
+					window.add(summaries[i]);
+				}
+			}
+		}
+		// id -> count and error summed over the days
+		Map<Long, long[]> sums = new HashMap<Long, long[]>();
+		for (SpaceSaving summary : window) {
+			for (Counter counter : summary.counters()) {
+				long[] sum = sums.get(counter.id);
+				if (sum == null) {
+					sum = new long[2];
+					sums.put(counter.id, sum);
+				}
+				sum[0] += counter.count;
+				sum[1] += counter.error;
+			}
+		}
+		List<Counter> counters = new ArrayList<Counter>(sums.size());
+		for (Map.Entry<Long, long[]> sum : sums.entrySet()) {
+			counters.add(new Counter(sum.getKey(), sum.getValue()[0], sum.getValue()[1]));
+		}
+		Collections.sort(counters, SpaceSaving.BY_COUNT_DESC);
+		return counters.subList(0, Math.min(k, counters.size()));
+	}
+
+	/**
+	 * Replaces the summaries of this top with the ones of another
+	 */
+	private void replaceWith(HeavyHitters loaded) {
+		synchronized (loaded) {
+			synchronized (this) {
+				System.arraycopy(loaded.summaries, 0, summaries, 0, summaries.length);
+				System.arraycopy(loaded.days, 0, days, 0, days.length);
+			}
+		}
+	}
+
+	public static Date getLoadedAt() {
+		return loadedAt;
+	}
+
+	/**
+	 * Counts the events of the window in the database, and replaces the current tops with them
+	 */
+	public static void load() {
+		DateMidnight today = new DateMidnight();
+		load(READ_INSIGHTS, "select e.insight.id, e.views from InsightDailyEngagement e " +
+				"where e.forDate >= :from and e.forDate < :to and e.views > 0 " +
+				"order by e.views desc",
+				"select v.insight.id, count(v.id) from UserInsightVisit v " +
+				"where v.creationDate >= :from and v.creationDate < :to " +
+				"group by v.insight.id order by count(v.id) desc", today);
+		// summed, in case the AnalyticsJob of two servers have rolled up the same day
+		load(VOTERS, "select d.user.id, sum(d.count) from UserInsightDailyVote d " +
+				"where d.forDate >= :from and d.forDate < :to " +
+				"group by d.user.id order by sum(d.count) desc",
+				"select v.user.id, count(v.id) from Vote v " +
+				"where v.creationDate >= :from and v.creationDate < :to " +
+				"group by v.user.id order by count(v.id) desc", today);
+		load(CREATORS, "select d.user.id, sum(d.count) from UserInsightDailyCreation d " +
+				"where d.forDate >= :from and d.forDate < :to " +
+				"group by d.user.id order by sum(d.count) desc",
+				"select i.creator.id, count(i.id) from Insight i " +
+				"where i.creationDate >= :from and i.creationDate < :to " +
+				"group by i.creator.id order by count(i.id) desc", today);
+		loadedAt = new Date();
+		Logger.info("HeavyHitters: tops of the last %s days loaded", WINDOW_DAYS);
+	}
+
+	/**
+	 * @param rollup : selects the id and count of the rolled up day (between :from and :to), the largest counts first
+	 * @param raw : the same from the events, for the days not rolled up
+	 */
+	private static void load(HeavyHitters top, String rollup, String raw, DateMidnight today) {
+		// counted aside, so that the top is not empty while it is loaded
+		HeavyHitters loaded = new HeavyHitters();
+		for (DateMidnight day = today.minusDays(WINDOW_DAYS); !day.isAfter(today); day = day.plusDays(1)) {
+			List<Object[]> counts = largestCounts(rollup, day);
+			if (counts.isEmpty()) {
+				counts = largestCounts(raw, day);
+			}
+			for (Object[] count : counts) {
+				loaded.offer(((Number) count[0]).longValue(), ((Number) count[1]).longValue(), new LocalDate(day));
+			}
+		}
+		top.replaceWith(loaded);
+	}
+
+	/**
+	 * @return at most CAPACITY (id, count) of this day: they all fit in the counters of the day, without any error
+	 */
+	private static List<Object[]> largestCounts(String query, DateMidnight day) {
+		return JPA.em().createQuery(query)
+				.setParameter("from", day.toDate())
+				.setParameter("to", day.plusDays(1).toDate())
+				.setMaxResults(CAPACITY)
+				.getResultList();
+	}
+}
@@ -0,0 +1,156 @@
+package helpers.analytics;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Approximate count of distinct ids (users...) in a fixed amount of memory: 2^14 registers,
+ * for a standard error of about 0.8%. Sketches can be merged to count the distinct ids of a union
+ * (the users of a week from the sketches of its days).
+ *
+ * Sketches of a few ids only keep their non empty registers, so that the sketch of an insight or
+ * a topic visited by a handful of users stays small.
+ */
+public class HyperLogLog {
+
+	public static final int PRECISION = 14;
+
+	private static final int REGISTERS = 1 << PRECISION;
+
+	/** above this number of non empty registers, all the registers are kept in an array */
+	private static final int SPARSE_MAX = 256;
+
+	private static final byte DENSE = 0;
+	private static final byte SPARSE = 1;
+
+	/** null while sparse */
+	private byte[] registers;
+
+	/** register index -> value, while there are few of them */
+	private Map<Integer, Byte> sparse = new HashMap<Integer, Byte>();
+
+	public void offer(long id) {
+		long hash = hash(id);
+		int index = (int) (hash >>> (64 - PRECISION));
+		// position of the first 1 bit in the other bits
+		int rank = Math.min(Long.numberOfLeadingZeros(hash << PRECISION), 64 - PRECISION) + 1;
+		set(index, (byte) rank);
+	}
+
+	/**
+	 * Adds the ids counted by the other sketch to this one
+	 */
+	public void merge(HyperLogLog other) {
+		if (other.registers != null) {
+			for (int i = 0; i < REGISTERS; i++) {
+				if (other.registers[i] != 0) {
+					set(i, other.registers[i]);
+				}
+			}
+		} else {
+			for (Map.Entry<Integer, Byte> register : other.sparse.entrySet()) {
+				set(register.getKey(), register.getValue());
+			}
+		}
+	}
+
+	/**
+	 * @return the estimated number of distinct ids
+	 */
+	public long cardinality() {
+		double sum = 0;
+		int zeros = 0;
+		for (int i = 0; i < REGISTERS; i++) {
+			int value = get(i);
+			sum += 1.0 / (1L << value);
+			if (value == 0) {
+				zeros++;
+			}
+		}
+		double alpha = 0.7213 / (1 + 1.079 / REGISTERS);
+		double estimate = alpha * REGISTERS * REGISTERS / sum;
+		// small cardinalities are better estimated from the number of empty registers
+		if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+			estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+		}
+		return Math.round(estimate);
+	}
+
+	/**
+	 * @return the sketch serialized, see fromBytes
+	 */
+	public byte[] toBytes() {
+		if (registers != null) {
+			ByteBuffer buffer = ByteBuffer.allocate(2 + REGISTERS);
+			buffer.put(DENSE).put((byte) PRECISION).put(registers);
+			return buffer.array();
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(2 + 4 + sparse.size() * 3);
+		buffer.put(SPARSE).put((byte) PRECISION).putInt(sparse.size());
+		for (Map.Entry<Integer, Byte> register : sparse.entrySet()) {
+			buffer.putShort((short) register.getKey().intValue()).put(register.getValue());
+		}
+		return buffer.array();
+	}
+
+	public static HyperLogLog fromBytes(byte[] bytes) {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		byte encoding = buffer.get();
+		if (buffer.get() != PRECISION) {
+			throw new IllegalArgumentException("Sketch of another precision");
+		}
+		HyperLogLog sketch = new HyperLogLog();
+		if (encoding == DENSE) {
+			sketch.registers = new byte[REGISTERS];
+			buffer.get(sketch.registers);
+			sketch.sparse = null;
+		} else {
+			for (int count = buffer.getInt(); count > 0; count--) {
+				sketch.set(buffer.getShort() & 0xffff, buffer.get());
+			}
+		}
+		return sketch;
+	}
+
+	private int get(int index) {
+		if (registers != null) {
+			return registers[index];
+		}
+		Byte value = sparse.get(index);
+		return value == null ? 0 : value;
+	}
+
+	private void set(int index, byte value) {
+		if (registers != null) {
+			if (value > registers[index]) {
+				registers[index] = value;
+			}
+			return;
+		}
+		Byte current = sparse.get(index);
+		if (current == null || value > current) {
+			sparse.put(index, value);
+			if (sparse.size() > SPARSE_MAX) {
+				registers = new byte[REGISTERS];
+				for (Map.Entry<Integer, Byte> register : sparse.entrySet()) {
+					registers[register.getKey()] = register.getValue();
+				}
+				sparse = null;
+			}
+		}
+	}
+
+	/**
+	 * 64 bits mix of the id (finalizer of MurmurHash3), consecutive ids must give unrelated hashes
+	 */
+	static long hash(long id) {
+		long h = id;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
@@ -0,0 +1,150 @@
+package helpers.analytics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The most frequent ids of a stream (the most read insights, the users who vote the most...), counted in a fixed
+ * number of counters with the Space-Saving algorithm: when all the counters are used, a new id takes the counter of
+ * the least frequent one, and inherits its count as error.
+ *
+ * An id more frequent than total / capacity is always counted, and its count is over-estimated by at most its error.
+ * The counters are kept in a min-heap so that each offer is O(log capacity).
+ */
+public class SpaceSaving {
+
+	/** an id and its estimated count */
+	public static class Counter {
+		public final long id;
+		public final long count;
+
+		/** the count may be over-estimated by this value */
+		public final long error;
+
+		public Counter(long id, long count, long error) {
+			this.id = id;
+			this.count = count;
+			this.error = error;
+		}
+	}
+
+	public static final Comparator<Counter> BY_COUNT_DESC = new Comparator<Counter>() {
+		@Override
+		public int compare(Counter c1, Counter c2) {
+			return c1.count > c2.count ? -1 : (c1.count < c2.count ? 1 : 0);
+		}
+	};
+
+	private final int capacity;
+
+	// min-heap of the counters, on their count
+	private final long[] ids;
+	private final long[] counts;
+	private final long[] errors;
+	private int size;
+
+	/** id -> position of its counter in the heap */
+	private final Map<Long, Integer> positions;
+
+	public SpaceSaving(int capacity) {
+		this.capacity = capacity;
+		this.ids = new long[capacity];
+		this.counts = new long[capacity];
+		this.errors = new long[capacity];
+		this.positions = new HashMap<Long, Integer>(capacity * 2);
+	}
+
+	public void offer(long id) {
+		offer(id, 1);
+	}
+
+	public synchronized void offer(long id, long weight) {
+		Integer position = positions.get(id);
+		if (position != null) {
+			counts[position] += weight;
+			siftDown(position);
+		} else if (size < capacity) {
+			ids[size] = id;
+			counts[size] = weight;
+			errors[size] = 0;
+			positions.put(id, size);
+			siftUp(size++);
+		} else {
+			// replaces the least frequent id
+			positions.remove(ids[0]);
+			errors[0] = counts[0];
+			counts[0] += weight;
+			ids[0] = id;
+			positions.put(id, 0);
+			siftDown(0);
+		}
+	}
+
+	/**
+	 * @return all the counted ids, the most frequent first
+	 */
+	public synchronized List<Counter> counters() {
+		List<Counter> counters = new ArrayList<Counter>(size);
+		for (int i = 0; i < size; i++) {
+			counters.add(new Counter(ids[i], counts[i], errors[i]));
+		}
+		Collections.sort(counters, BY_COUNT_DESC);
+		return counters;
+	}
+
+	/**
+	 * @return the k most frequent ids, the most frequent first
+	 */
+	public List<Counter> top(int k) {
+		List<Counter> counters = counters();
+		return counters.subList(0, Math.min(k, counters.size()));
+	}
+
+	private void siftUp(int i) {
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (counts[parent] <= counts[i]) {
+				return;
+			}
+			swap(i, parent);
+			i = parent;
+		}
+	}
+
+	private void siftDown(int i) {
+		while (true) {
+			int smallest = i;
+			int left = 2 * i + 1;
+			int right = left + 1;
+			if (left < size && counts[left] < counts[smallest]) {
+				smallest = left;
+			}
+			if (right < size && counts[right] < counts[smallest]) {
+				smallest = right;
+			}
+			if (smallest == i) {
+				return;
+			}
+			swap(i, smallest);
+			i = smallest;
+		}
+	}
+
+	private void swap(int i, int j) {
+		long id = ids[i];
+		ids[i] = ids[j];
+		ids[j] = id;
+		long count = counts[i];
+		counts[i] = counts[j];
+		counts[j] = count;
+		long error = errors[i];
+		errors[i] = errors[j];
+		errors[j] = error;
+		positions.put(ids[i], i);
+		positions.put(ids[j], j);
+	}
+}
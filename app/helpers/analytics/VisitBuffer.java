@@ -0,0 +1,79 @@
+package helpers.analytics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jobs.VisitWriterJob;
+import models.analytics.UserVisit;
+import play.Play;
+
+/**
+ * Visits of the pages waiting to be written by {@link VisitWriterJob}, so that the page requests don't wait for the insert.
+ *
+ * The buffer is bounded (analytics.visits.bufferSize, default 10000): when the writer is late, new visits are dropped
+ * and counted rather than slowing down the pages. The writer runs every second, or as soon as a batch
+ * (analytics.visits.batchSize, default 200) is waiting.
+ */
+public class VisitBuffer {
+
+	private static final BlockingQueue<UserVisit> visits = new ArrayBlockingQueue<UserVisit>(
+			Integer.parseInt(Play.configuration.getProperty("analytics.visits.bufferSize", "10000")));
+
+	private static final AtomicLong dropped = new AtomicLong();
+
+	/** true while a writer is triggered by a full batch, not to start one per visit */
+	private static final AtomicBoolean writerTriggered = new AtomicBoolean();
+
+	/**
+	 * Adds a new (not saved) visit, to be written with the next batch
+	 */
+	public static void add(UserVisit visit) {
+		if (!visits.offer(visit)) {
+			dropped.incrementAndGet();
+			return;
+		}
+		if (visits.size() >= batchSize() && writerTriggered.compareAndSet(false, true)) {
+			new VisitWriterJob().now();
+		}
+	}
+
+	/**
+	 * @return at most a batch of the waiting visits, removed from the buffer
+	 */
+	public static List<UserVisit> drainBatch() {
+		writerTriggered.set(false);
+		List<UserVisit> batch = new ArrayList<UserVisit>(batchSize());
+		visits.drainTo(batch, batchSize());
+		return batch;
+	}
+
+	/**
+	 * Puts back a batch that could not be written, to be written with the next ones (dropped if the buffer is full)
+	 */
+	public static void putBack(List<UserVisit> batch) {
+		for (UserVisit visit : batch) {
+			if (!visits.offer(visit)) {
+				dropped.incrementAndGet();
+			}
+		}
+	}
+
+	public static int size() {
+		return visits.size();
+	}
+
+	/**
+	 * @return the number of visits dropped since startup because the buffer was full
+	 */
+	public static long droppedCount() {
+		return dropped.get();
+	}
+
+	public static int batchSize() {
+		return Integer.parseInt(Play.configuration.getProperty("analytics.visits.batchSize", "200"));
+	}
+}
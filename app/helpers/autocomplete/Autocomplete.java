@@ -0,0 +1,116 @@
+package helpers.autocomplete;
+
+import helpers.autocomplete.AutocompleteIndex.Entry;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import models.Tag;
+import models.User;
+import play.Logger;
+
+/**
+ * Autocompletion of user names and tag labels, from indexes kept in memory.
+ *
+ * The indexes are loaded from the database on first use and reloaded by the AutocompleteReloadJob,
+ * which also updates the popularity of the labels (number of followers of a user, number of insights of a tag).
+ * Users and tags created between two reloads are added to a small list searched along with the index,
+ * and kept in it until a reload finds them in the database.
+ */
+public abstract class Autocomplete {
+
+	/** user names, the most followed users first */
+	public static final Autocomplete users = new Autocomplete("users") {
+		@Override
+		protected List<Object[]> loadRows() {
+			return User.find("select u.id, u.userName, count(f.id) from User u left join u.followers f group by u.id, u.userName").fetch();
+		}
+	};
+
+	/** tag labels, the tags of the most insights first */
+	public static final Autocomplete tags = new Autocomplete("tags") {
+		@Override
+		protected List<Object[]> loadRows() {
+			return Tag.find("select t.id, t.label, count(i.id) from Tag t left join t.insights i where t.deleted is false group by t.id, t.label").fetch();
+		}
+	};
+
+	private final String name;
+
+	private volatile AutocompleteIndex index;
+
+	/** entries added since the index has been loaded */
+	private final List<Entry> added = new CopyOnWriteArrayList<Entry>();
+
+	private Autocomplete(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @return rows of [id, label, weight]
+	 */
+	protected abstract List<Object[]> loadRows();
+
+	/**
+	 * (re)load the index from the database
+	 */
+	public synchronized void reload() {
+		long start = System.currentTimeMillis();
+		List<Object[]> rows = loadRows();
+		List<Entry> entries = new ArrayList<Entry>(rows.size());
+		Set<Long> ids = new HashSet<Long>(rows.size());
+		for (Object[] row : rows) {
+			entries.add(new Entry((Long)row[0], (String)row[1], ((Number)row[2]).longValue()));
+			ids.add((Long)row[0]);
+		}
+		index = new AutocompleteIndex(entries);
+		// an entry added during the load may not have been committed yet, it is only dropped once it is in the index
+		for (Entry entry : added) {
+			if (ids.contains(entry.id)) {
+				added.remove(entry);
+			}
+		}
+		Logger.info("Autocomplete index of %s loaded: %s entries in %s ms", name, index.size(), System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * A user or tag has been created, it can be suggested right away
+	 */
+	public void add(Long id, String label) {
+		if (label != null) {
+			added.add(new Entry(id, label, 0));
+		}
+	}
+
+	/**
+	 * @return labels starting with the term (the most popular first), then labels containing it
+	 */
+	public List<Entry> suggest(String term, int max) {
+		return suggest(term, max, null);
+	}
+
+	/**
+	 * @param allowedIds : only suggest the entries with these ids
+	 */
+	public List<Entry> suggest(String term, int max, Set<Long> allowedIds) {
+		List<Entry> prefixMatches = new ArrayList<Entry>();
+		List<Entry> infixMatches = new ArrayList<Entry>();
+		index().collect(term, allowedIds, prefixMatches, infixMatches);
+		if (!added.isEmpty()) {
+			new AutocompleteIndex(added).collect(term, allowedIds, prefixMatches, infixMatches);
+		}
+		return AutocompleteIndex.merge(prefixMatches, infixMatches, max);
+	}
+
+	private AutocompleteIndex index() {
+		AutocompleteIndex current = index;
+		if (current == null) {
+			reload();
+			current = index;
+		}
+		return current;
+	}
+}
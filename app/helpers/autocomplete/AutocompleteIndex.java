@@ -0,0 +1,189 @@
+package helpers.autocomplete;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable index of labels (user names, tag labels...) for autocompletion.
+ *
+ * The labels are kept in a sorted array to find the ones starting with a term by binary search,
+ * and each trigram of the labels points to the labels containing it, to find the ones containing a term.
+ * Labels starting with the term come first, then the most popular ones (highest weight).
+ */
+public class AutocompleteIndex {
+
+	/** minimal length of a term to look for labels containing it (and not only starting with it) */
+	public static final int INFIX_MIN_LENGTH = 3;
+
+	public static class Entry {
+		public final Long id;
+		public final String label;
+		/** popularity of the label, the highest first */
+		public final long weight;
+		/** lower case label */
+		final String key;
+
+		public Entry(Long id, String label, long weight) {
+			this.id = id;
+			this.label = label;
+			this.weight = weight;
+			this.key = label == null ? null : label.toLowerCase();
+		}
+	}
+
+	private static final Comparator<Entry> BY_KEY = new Comparator<Entry>() {
+		public int compare(Entry e1, Entry e2) {
+			return e1.key.compareTo(e2.key);
+		}
+	};
+
+	private static final Comparator<Entry> BY_WEIGHT = new Comparator<Entry>() {
+		public int compare(Entry e1, Entry e2) {
+			return e1.weight > e2.weight ? -1 : (e1.weight == e2.weight ? 0 : 1);
+		}
+	};
+
+	private final Entry[] entries;
+
+	/** trigram -> positions in entries of the labels containing it */
+	private final Map<String, int[]> trigrams;
+
+	public AutocompleteIndex(Collection<Entry> entries) {
+		List<Entry> withLabel = new ArrayList<Entry>(entries.size());
+		for (Entry entry : entries) {
+			if (entry.label != null) {
+				withLabel.add(entry);
+			}
+		}
+		this.entries = withLabel.toArray(new Entry[withLabel.size()]);
+		Arrays.sort(this.entries, BY_KEY);
+
+		Map<String, List<Integer>> positions = new HashMap<String, List<Integer>>();
+		for (int i = 0; i < this.entries.length; i++) {
+			for (String trigram : trigrams(this.entries[i].key)) {
+				List<Integer> list = positions.get(trigram);
+				if (list == null) {
+					list = new ArrayList<Integer>();
+					positions.put(trigram, list);
+				}
+				list.add(i);
+			}
+		}
+		this.trigrams = new HashMap<String, int[]>(positions.size());
+		for (Map.Entry<String, List<Integer>> position : positions.entrySet()) {
+			int[] array = new int[position.getValue().size()];
+			for (int i = 0; i < array.length; i++) {
+				array[i] = position.getValue().get(i);
+			}
+			this.trigrams.put(position.getKey(), array);
+		}
+	}
+
+	public int size() {
+		return entries.length;
+	}
+
+	/**
+	 * @param term : the beginning or a part of the label
+	 * @param max : maximum number of entries returned
+	 * @param allowedIds : only return entries with these ids, null for all
+	 * @return the entries whose label starts with the term (the most popular first) followed by the ones containing it
+	 */
+	public List<Entry> suggest(String term, int max, Set<Long> allowedIds) {
+		List<Entry> prefixMatches = new ArrayList<Entry>();
+		List<Entry> infixMatches = new ArrayList<Entry>();
+		collect(term, allowedIds, prefixMatches, infixMatches);
+		return merge(prefixMatches, infixMatches, max);
+	}
+
+	/**
+	 * adds the entries matching the term to the lists
+	 */
+	void collect(String term, Set<Long> allowedIds, List<Entry> prefixMatches, List<Entry> infixMatches) {
+		String key = term == null ? "" : term.trim().toLowerCase();
+		if (key.length() == 0) {
+			return;
+		}
+		// labels starting with the term are contiguous in the sorted array
+		for (int i = firstNotBefore(key); i < entries.length && entries[i].key.startsWith(key); i++) {
+			if (allowedIds == null || allowedIds.contains(entries[i].id)) {
+				prefixMatches.add(entries[i]);
+			}
+		}
+		if (key.length() < INFIX_MIN_LENGTH) {
+			return;
+		}
+		// labels containing the term contain all its trigrams, start from the rarest one
+		int[] candidates = null;
+		for (String trigram : trigrams(key)) {
+			int[] positions = trigrams.get(trigram);
+			if (positions == null) {
+				return;
+			}
+			if (candidates == null || positions.length < candidates.length) {
+				candidates = positions;
+			}
+		}
+		for (int position : candidates) {
+			Entry entry = entries[position];
+			if (!entry.key.startsWith(key) && entry.key.contains(key) && (allowedIds == null || allowedIds.contains(entry.id))) {
+				infixMatches.add(entry);
+			}
+		}
+	}
+
+	static List<Entry> merge(List<Entry> prefixMatches, List<Entry> infixMatches, int max) {
+		Collections.sort(prefixMatches, BY_WEIGHT);
+		Collections.sort(infixMatches, BY_WEIGHT);
+		List<Entry> result = new ArrayList<Entry>(Math.min(max, prefixMatches.size() + infixMatches.size()));
+		for (Entry entry : prefixMatches) {
+			if (result.size() >= max) {
+				return result;
+			}
+			result.add(entry);
+		}
+		for (Entry entry : infixMatches) {
+			if (result.size() >= max) {
+				return result;
+			}
+			result.add(entry);
+		}
+		return result;
+	}
+
+	/**
+	 * @return the position of the first entry whose key is not before this one
+	 */
+	private int firstNotBefore(String key) {
+		int low = 0;
+		int high = entries.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (entries[middle].key.compareTo(key) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	static Set<String> trigrams(String key) {
+		if (key.length() < INFIX_MIN_LENGTH) {
+			return Collections.emptySet();
+		}
+		Set<String> result = new LinkedHashSet<String>();
+		for (int i = 0; i + INFIX_MIN_LENGTH <= key.length(); i++) {
+			result.add(key.substring(i, i + INFIX_MIN_LENGTH));
+		}
+		return result;
+	}
+}
@@ -0,0 +1,62 @@
+package helpers.cache;
+
+import java.io.Serializable;
+
+import models.User;
+import play.cache.Cache;
+
+/**
+ * The few fields of the connected user that are read on every page (menu, language, templates).
+ *
+ * Kept in the cache between requests, keyed by the id of the user, so that displaying them doesn't need to load the user.
+ * The user entity removes it from the cache every time it is saved.
+ */
+public class CurrentUserInfo implements Serializable {
+
+	public static final String EXPIRATION = "10mn";
+
+	private static final String KEY_PREFIX = "currentUser_";
+
+	public Long id;
+	public String email;
+	public String userName;
+	public boolean isAdmin;
+	public Long facebookUserId;
+	/** label of the language the user wants his UI to be displayed in */
+	public String uiLanguage;
+	public String avatarHashCode;
+
+	public CurrentUserInfo(User user) {
+		this.id = user.id;
+		this.email = user.email;
+		this.userName = user.userName;
+		this.isAdmin = user.isAdmin;
+		this.facebookUserId = user.facebookUserId;
+		if (user.uiLanguage != null) {
+			this.uiLanguage = user.uiLanguage.label;
+		}
+		this.avatarHashCode = user.avatarHashCode();
+	}
+
+	/**
+	 * @return the cached info of this user, null if not in the cache
+	 */
+	public static CurrentUserInfo get(Long userId) {
+		return Cache.get(KEY_PREFIX + userId, CurrentUserInfo.class);
+	}
+
+	/**
+	 * @return the info of the given user, now in the cache
+	 */
+	public static CurrentUserInfo put(User user) {
+		CurrentUserInfo info = new CurrentUserInfo(user);
+		Cache.safeSet(KEY_PREFIX + user.id, info, EXPIRATION);
+		return info;
+	}
+
+	public static void invalidate(Long userId) {
+		if (userId != null) {
+			Cache.safeDelete(KEY_PREFIX + userId);
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package helpers.cache;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The InsightTrends of an insight, as parallel arrays ordered by date.
+ * This is what is needed to draw the probability chart of an insight without holding InsightTrend entities.
+ * Only plain values, so that it can be kept in the cache.
+ */
+public class InsightTrendSeries implements Serializable {
+
+	/** trendDate of each point, in milliseconds */
+	public final long[] timestamps;
+	/** occurenceProbability of each point, between 0 and 1 */
+	public final double[] probabilities;
+	public final long[] agreeCounts;
+	public final long[] disagreeCounts;
+
+	private InsightTrendSeries(int size) {
+		this.timestamps = new long[size];
+		this.probabilities = new double[size];
+		this.agreeCounts = new long[size];
+		this.disagreeCounts = new long[size];
+	}
+
+	/**
+	 * @param rows : rows of [trendDate, occurenceProbability, agreeCount, disagreeCount] ordered by trendDate
+	 * @param maxPoints : maximum number of points to keep, the first and last points are always kept
+	 */
+	public static InsightTrendSeries fromRows(List<Object[]> rows, int maxPoints) {
+		int size = Math.min(rows.size(), maxPoints);
+		InsightTrendSeries series = new InsightTrendSeries(size);
+		for (int i = 0; i < size; i++) {
+			Object[] row = rows.get(sourceIndex(i, size, rows.size()));
+			series.timestamps[i] = ((Date)row[0]).getTime();
+			series.probabilities[i] = ((Number)row[1]).doubleValue();
+			series.agreeCounts[i] = ((Number)row[2]).longValue();
+			series.disagreeCounts[i] = ((Number)row[3]).longValue();
+		}
+		return series;
+	}
+
+	/**
+	 * index of the source point to use for the i-th of the size points kept, evenly spread between the first and the last source point.
+	 */
+	static int sourceIndex(int i, int size, int sourceSize) {
+		if (size == sourceSize || size <= 1) {
+			return i;
+		}
+		return (int)Math.round((double)i * (sourceSize - 1) / (size - 1));
+	}
+
+	public int size() {
+		return timestamps.length;
+	}
+}
@@ -0,0 +1,68 @@
+package helpers.cache;
+
+import java.util.List;
+
+import models.InsightTrend;
+import play.cache.Cache;
+
+/**
+ * Keeps the trend series of the displayed insights in the cache, shared by the application servers.
+ *
+ * Series are stored under a per-insight version number (like {@link SidebarSnapshot}): adding or removing a trend of
+ * an insight calls {@link #invalidate(Long)}, which bumps the version and makes the previous series unreachable.
+ * The trends are invalidated when they are flushed, before their transaction commits: a series loaded meanwhile
+ * misses them, so the series also expire after EXPIRATION.
+ */
+public class InsightTrendSeriesCache {
+
+	/** maximum number of points of a series, more than enough for the charts */
+	public static final int MAX_POINTS = 200;
+
+	/** maximum time a series is kept, bounds the staleness of a series loaded before its new trends were committed */
+	public static final String EXPIRATION = "10mn";
+
+	private static final String VERSION_KEY_PREFIX = "insightTrendsVersion_";
+	private static final String SERIES_KEY_PREFIX = "insightTrends_";
+
+	/** bumped by clear(), part of the key of every series */
+	private static final String GENERATION_KEY = "insightTrendsGeneration";
+
+	/**
+	 * @return the trend series of this insight, loaded from the database if it wasn't in the cache
+	 */
+	public static InsightTrendSeries get(Long insightId) {
+		// the key is taken before the load: if the insight is invalidated meanwhile, this series is stored under the old version
+		String key = SERIES_KEY_PREFIX + version(GENERATION_KEY) + "_" + insightId + "_" + version(VERSION_KEY_PREFIX + insightId);
+		InsightTrendSeries series = Cache.get(key, InsightTrendSeries.class);
+		if (series == null) {
+			List<Object[]> rows = InsightTrend.find("select t.trendDate, t.occurenceProbability, t.agreeCount, t.disagreeCount from InsightTrend t "
+					+ "where t.insight.id = :insightId order by t.trendDate").bind("insightId", insightId).fetch();
+			series = InsightTrendSeries.fromRows(rows, MAX_POINTS);
+			Cache.safeSet(key, series, EXPIRATION);
+		}
+		return series;
+	}
+
+	/**
+	 * the trends of this insight have changed
+	 */
+	public static void invalidate(Long insightId) {
+		bump(VERSION_KEY_PREFIX + insightId);
+	}
+
+	public static void clear() {
+		bump(GENERATION_KEY);
+	}
+
+	private static long version(String key) {
+		Long version = Cache.get(key, Long.class);
+		if (version == null) {
+			return 0;
+		}
+		return version;
+	}
+
+	private static void bump(String key) {
+		Cache.safeSet(key, version(key) + 1, "1d");
+	}
+}
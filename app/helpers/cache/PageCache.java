@@ -0,0 +1,142 @@
+package helpers.cache;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import play.Play;
+import play.cache.Cache;
+import play.i18n.Lang;
+import play.libs.Codec;
+import play.libs.Time;
+import play.mvc.Http.Cookie;
+import play.mvc.Http.Request;
+import play.mvc.Scope;
+import play.mvc.Scope.Session;
+
+/**
+ * Full pages rendered for anonymous visitors, which are the same for all of them.
+ *
+ * A page is cached by action, url (path and query string) and language, for a duration depending on the action.
+ * The pages of an insight are also versioned by the uniqueId of the insight, votes and comments on this insight
+ * bump the version so that the next visitor gets a freshly rendered page.
+ *
+ * A cached page must not contain anything of the visitor it was rendered for : its forms are written with
+ * #{beansight.publicForm} instead of #{form}, which would put the authenticity token of the visitor in the page.
+ */
+public class PageCache {
+
+	private static final String PAGE_KEY_PREFIX = "page_";
+	private static final String INSIGHT_VERSION_KEY_PREFIX = "pageVersion_insight_";
+
+	/** the authenticity token Play puts in the session of any visitor who has seen a #{form} */
+	private static final String AUTHENTICITY_TOKEN_KEY = "___AT";
+
+	/** the keys of the session of a visitor who is not connected : timestamp and authenticity token */
+	private static final Set<String> ANONYMOUS_SESSION_KEYS = new HashSet<String>(Arrays.asList("___TS", AUTHENTICITY_TOKEN_KEY));
+
+	/** how long the page of each cached action is kept */
+	private static final Map<String, String> expirations = new HashMap<String, String>();
+	static {
+		expirations.put("Application.insights", "1mn");
+		expirations.put("Application.showInsight", "5mn");
+		expirations.put("Application.experts", "5mn");
+		expirations.put("Application.FAQ", "1h");
+	}
+
+	/** A rendered html page */
+	public static class CachedPage implements Serializable {
+		public String html;
+		public String etag;
+
+		public CachedPage(String html) {
+			this.html = html;
+			this.etag = "\"" + Codec.hexMD5(html) + "\"";
+		}
+	}
+
+	/**
+	 * @return true if the page of this request can be served from (and put in) the cache:
+	 * it is a GET and the visitor is not connected, with no message or validation error to display
+	 */
+	public static boolean isCacheable(Request request, Session session) {
+		return "GET".equals(request.method)
+				&& expirations.containsKey(request.action)
+				&& ANONYMOUS_SESSION_KEYS.containsAll(session.all().keySet())
+				&& !hasCookie(request, Scope.COOKIE_PREFIX + "_FLASH")
+				&& !hasCookie(request, Scope.COOKIE_PREFIX + "_ERRORS");
+	}
+
+	/**
+	 * @return true if this page, rendered for the visitor of this session, can be served to all the anonymous visitors :
+	 * a #{form} left in it would contain the authenticity token of the visitor
+	 */
+	public static boolean isShareable(String html, Session session) {
+		String authenticityToken = session.get(AUTHENTICITY_TOKEN_KEY);
+		return authenticityToken == null || !html.contains(authenticityToken);
+	}
+
+	private static boolean hasCookie(Request request, String name) {
+		Cookie cookie = request.cookies.get(name);
+		return cookie != null && cookie.value != null && cookie.value.length() > 0;
+	}
+
+	public static CachedPage get(Request request) {
+		return Cache.get(key(request), CachedPage.class);
+	}
+
+	public static void put(Request request, CachedPage page) {
+		Cache.safeSet(key(request), page, expirations.get(request.action));
+	}
+
+	/**
+	 * @return the number of seconds the page of this action is cached
+	 */
+	public static int maxAge(Request request) {
+		return Time.parseDuration(expirations.get(request.action));
+	}
+
+	/**
+	 * @return true if the ETag header should be sent with cached pages
+	 */
+	public static boolean useETag() {
+		return Boolean.parseBoolean(Play.configuration.getProperty("http.useETag", "true"));
+	}
+
+	/**
+	 * Something displayed on the page of this insight has changed (vote, comment)
+	 */
+	public static void invalidateInsight(String insightUniqueId) {
+		if (insightUniqueId == null) {
+			return;
+		}
+		Cache.safeSet(INSIGHT_VERSION_KEY_PREFIX + insightUniqueId, insightVersion(insightUniqueId) + 1, "1d");
+	}
+
+	private static long insightVersion(String insightUniqueId) {
+		Long version = Cache.get(INSIGHT_VERSION_KEY_PREFIX + insightUniqueId, Long.class);
+		if (version == null) {
+			return 0;
+		}
+		return version;
+	}
+
+	private static String key(Request request) {
+		StringBuilder key = new StringBuilder(PAGE_KEY_PREFIX)
+			.append(request.action)
+			.append("_").append(Lang.get())
+			.append("_").append(request.path);
+		if (request.querystring != null && !request.querystring.equals("")) {
+			key.append("?").append(request.querystring);
+		}
+		Object insightUniqueId = request.routeArgs.get("insightUniqueId");
+		if (insightUniqueId != null) {
+			key.append("_").append(insightVersion(insightUniqueId.toString()));
+		}
+		// some cache implementations (memcached) do not accept long keys or spaces
+		return PAGE_KEY_PREFIX + Codec.hexMD5(key.toString());
+	}
+}
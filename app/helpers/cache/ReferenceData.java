@@ -0,0 +1,205 @@
+package helpers.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import models.Category;
+import models.FeaturedInsight;
+import models.FeaturedSponsor;
+import models.Language;
+import play.Logger;
+import play.cache.Cache;
+
+/**
+ * The data that is read on nearly every request but only changes a few times a month:
+ * categories, languages and the periods of the featured insights and sponsors.
+ *
+ * It is loaded at startup into an immutable snapshot, which is replaced as a whole when an admin
+ * saves one of these objects (see the cruds controllers), so readers never see a half loaded snapshot.
+ * Saving one also bumps a version in the cache: the other application servers reload their snapshot when they see it
+ * (ReferenceDataReloadJob), and at least every MAX_AGE_MILLIS in case the cache isn't shared.
+ * The categories and languages of the snapshot are detached entities : they can be displayed, used in queries
+ * or referenced by other entities, but must not be modified or saved.
+ */
+public class ReferenceData {
+
+	private static volatile Snapshot snapshot;
+
+	private static final String VERSION_KEY = "referenceDataVersion";
+
+	/** a snapshot is reloaded after this time even if its version hasn't changed */
+	private static final long MAX_AGE_MILLIS = 10 * 60 * 1000L;
+
+	/** version of the reference data and time of the current snapshot */
+	private static volatile long loadedVersion;
+	private static volatile long loadedAt;
+
+	/** The period of a featured insight or sponsor, enough to know if it is active without loading it */
+	public static class FeaturedPeriod {
+		public final Long id;
+		public final Long languageId;
+		public final Date startDate;
+		public final Date endDate;
+
+		public FeaturedPeriod(Long id, Long languageId, Date startDate, Date endDate) {
+			this.id = id;
+			this.languageId = languageId;
+			this.startDate = startDate;
+			this.endDate = endDate;
+		}
+
+		public boolean isActive(Date now, List<Language> langs) {
+			if (startDate == null || endDate == null || !startDate.before(now) || !endDate.after(now)) {
+				return false;
+			}
+			for (Language lang : langs) {
+				// getId() rather than id : the language can be a lazy loading proxy
+				if (lang != null && lang.getId().equals(languageId)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	private static class Snapshot {
+		final List<Category> categories;
+		final Map<Long, Category> categoriesById;
+		final Map<String, Language> languagesByLabel;
+		/** ordered by startDate desc */
+		final List<FeaturedPeriod> featuredInsights;
+		/** ordered by startDate desc */
+		final List<FeaturedPeriod> featuredSponsors;
+
+		Snapshot(List<Category> categories, Map<String, Language> languagesByLabel, List<FeaturedPeriod> featuredInsights, List<FeaturedPeriod> featuredSponsors) {
+			this.categories = Collections.unmodifiableList(categories);
+			Map<Long, Category> categoriesById = new HashMap<Long, Category>();
+			for (Category category : categories) {
+				categoriesById.put(category.id, category);
+			}
+			this.categoriesById = categoriesById;
+			this.languagesByLabel = languagesByLabel;
+			this.featuredInsights = featuredInsights;
+			this.featuredSponsors = featuredSponsors;
+		}
+	}
+
+	/**
+	 * (re)load all the reference data from the database and replace the current snapshot
+	 */
+	public static synchronized void load() {
+		// read before the data: a change saved during the load makes the next check load it again
+		long version = version();
+		List<Category> categories = Category.find("order by id").fetch();
+
+		Map<String, Language> languagesByLabel = new HashMap<String, Language>();
+		List<Language> languages = Language.findAll();
+		for (Language language : languages) {
+			languagesByLabel.put(language.label, language);
+		}
+
+		List<Object[]> featuredInsightRows = FeaturedInsight.find("select f.id, f.insight.lang.id, f.startDate, f.endDate from FeaturedInsight f order by f.startDate desc").fetch();
+		List<Object[]> featuredSponsorRows = FeaturedSponsor.find("select f.id, f.language.id, f.startDate, f.endDate from FeaturedSponsor f order by f.startDate desc").fetch();
+
+		snapshot = new Snapshot(categories, languagesByLabel, toPeriods(featuredInsightRows), toPeriods(featuredSponsorRows));
+		loadedVersion = version;
+		loadedAt = System.currentTimeMillis();
+		Logger.info("Reference data loaded: %s categories, %s languages, %s featured insights, %s featured sponsors",
+				categories.size(), languages.size(), featuredInsightRows.size(), featuredSponsorRows.size());
+	}
+
+	/**
+	 * An admin has saved reference data: reloads it here, and tells the other application servers to reload it
+	 */
+	public static void changed() {
+		Cache.safeSet(VERSION_KEY, version() + 1, "30d");
+		load();
+	}
+
+	/**
+	 * Reloads the reference data if it has been changed on another application server, or if it is older than MAX_AGE_MILLIS
+	 */
+	public static void reloadIfChanged() {
+		if (version() != loadedVersion || System.currentTimeMillis() - loadedAt > MAX_AGE_MILLIS) {
+			load();
+		}
+	}
+
+	private static long version() {
+		Long version = Cache.get(VERSION_KEY, Long.class);
+		if (version == null) {
+			return 0;
+		}
+		return version;
+	}
+
+	/**
+	 * @return all the categories, ordered by id
+	 */
+	public static List<Category> categories() {
+		return current().categories;
+	}
+
+	/**
+	 * @return the category with this id, null if it doesn't exist
+	 */
+	public static Category category(Long id) {
+		if (id == null) {
+			return null;
+		}
+		return current().categoriesById.get(id);
+	}
+
+	/**
+	 * @return the language with this label, null if it wasn't in the database when the snapshot was loaded
+	 */
+	public static Language language(String label) {
+		return current().languagesByLabel.get(label);
+	}
+
+	/**
+	 * @return ids of the featured insights active now in one of these languages, most recent first
+	 */
+	public static List<Long> activeFeaturedInsightIds(List<Language> langs) {
+		return activeIds(current().featuredInsights, langs);
+	}
+
+	/**
+	 * @return ids of the featured sponsors active now in one of these languages, most recent first
+	 */
+	public static List<Long> activeFeaturedSponsorIds(List<Language> langs) {
+		return activeIds(current().featuredSponsors, langs);
+	}
+
+	private static List<Long> activeIds(List<FeaturedPeriod> periods, List<Language> langs) {
+		Date now = new Date();
+		List<Long> ids = new ArrayList<Long>();
+		for (FeaturedPeriod period : periods) {
+			if (period.isActive(now, langs)) {
+				ids.add(period.id);
+			}
+		}
+		return ids;
+	}
+
+	private static List<FeaturedPeriod> toPeriods(List<Object[]> rows) {
+		List<FeaturedPeriod> periods = new ArrayList<FeaturedPeriod>(rows.size());
+		for (Object[] row : rows) {
+			periods.add(new FeaturedPeriod((Long)row[0], (Long)row[1], (Date)row[2], (Date)row[3]));
+		}
+		return Collections.unmodifiableList(periods);
+	}
+
+	private static Snapshot current() {
+		Snapshot current = snapshot;
+		if (current == null) {
+			load();
+			current = snapshot;
+		}
+		return current;
+	}
+}
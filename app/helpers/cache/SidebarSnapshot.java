@@ -0,0 +1,214 @@
+package helpers.cache;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import models.FeaturedSponsor;
+import models.Insight;
+import models.InsightActivity;
+import models.TagActivity;
+import models.User;
+import models.UserActivity;
+import play.cache.Cache;
+
+/**
+ * Everything the left sidebar displays for a connected user (favorite activities, suggested facebook friends, featured sponsor).
+ *
+ * A snapshot only contains plain values so that it can be kept in the cache between requests
+ * and rendered without touching the database. The properties are named like the entities they replace,
+ * so the sidebar tags render a snapshot the same way they render the entities.
+ *
+ * Snapshots are stored under a per-user version number: everything that modifies an activity or a facebook friend
+ * of a user calls {@link #invalidate(Long)}, which bumps the version and makes the previous snapshot unreachable.
+ */
+public class SidebarSnapshot implements Serializable {
+
+	/** maximum time a snapshot is kept, bounds the staleness of the data that doesn't bump the version (featured sponsors, hidden insights) */
+	public static final String EXPIRATION = "30mn";
+
+	private static final String VERSION_KEY_PREFIX = "sidebarVersion_";
+	private static final String SNAPSHOT_KEY_PREFIX = "sidebar_";
+
+	/** the version of the user's sidebar this snapshot has been built for */
+	public long version;
+
+	public List<InsightActivityItem> followedInsightActivities = new ArrayList<InsightActivityItem>();
+	public List<UserActivityItem> followedUserActivities = new ArrayList<UserActivityItem>();
+	public List<TagActivityItem> followedTopicActivities = new ArrayList<TagActivityItem>();
+	public List<UserItem> advisedUsers = new ArrayList<UserItem>();
+	/** null if no sponsor is currently featured */
+	public FeaturedSponsorItem featuredSponsor;
+
+	/**
+	 * Return the sidebar snapshot of the given user, from the cache if it is still up to date, built from the database otherwise.
+	 */
+	public static SidebarSnapshot get(User user, int insightActivityNumber, int userActivityNumber, int topicActivityNumber) {
+		long version = currentVersion(user.id);
+		String key = snapshotKey(user.id, version);
+		SidebarSnapshot snapshot = Cache.get(key, SidebarSnapshot.class);
+		if (snapshot == null) {
+			snapshot = build(user, version, insightActivityNumber, userActivityNumber, topicActivityNumber);
+			Cache.safeSet(key, snapshot, EXPIRATION);
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Something displayed in the sidebar of this user has changed: the next call to {@link #get} will rebuild the snapshot.
+	 */
+	public static void invalidate(Long userId) {
+		if (userId == null) {
+			return;
+		}
+		Cache.safeSet(VERSION_KEY_PREFIX + userId, currentVersion(userId) + 1, "1d");
+	}
+
+	private static long currentVersion(Long userId) {
+		Long version = Cache.get(VERSION_KEY_PREFIX + userId, Long.class);
+		if (version == null) {
+			return 0;
+		}
+		return version;
+	}
+
+	private static String snapshotKey(Long userId, long version) {
+		return SNAPSHOT_KEY_PREFIX + userId + "_" + version;
+	}
+
+	private static SidebarSnapshot build(User user, long version, int insightActivityNumber, int userActivityNumber, int topicActivityNumber) {
+		SidebarSnapshot snapshot = new SidebarSnapshot();
+		snapshot.version = version;
+
+		for (InsightActivity activity : user.getFavoriteInsightActivity(insightActivityNumber)) {
+			snapshot.followedInsightActivities.add(new InsightActivityItem(activity));
+		}
+		for (UserActivity activity : user.getFavoriteUserActivity(userActivityNumber)) {
+			snapshot.followedUserActivities.add(new UserActivityItem(activity));
+		}
+		for (TagActivity activity : user.getFavoriteTopicActivity(topicActivityNumber)) {
+			snapshot.followedTopicActivities.add(new TagActivityItem(activity));
+		}
+		for (User friend : user.findSuggestedFacebookFriends()) {
+			snapshot.advisedUsers.add(new UserItem(friend));
+		}
+
+		List<FeaturedSponsor> featuredSponsors = FeaturedSponsor.findActive(user.getWrittingLanguages());
+		if (!featuredSponsors.isEmpty()) {
+			// do not check if already voted, always show.
+			snapshot.featuredSponsor = new FeaturedSponsorItem(featuredSponsors.get(0));
+		}
+		return snapshot;
+	}
+
+	/** The fields of an insight needed to display it in a list */
+	public static class InsightItem implements Serializable {
+		public Long id;
+		public String uniqueId;
+		public String content;
+		public Date endDate;
+		public boolean validated;
+		public double validationScore;
+		public boolean sponsored;
+
+		public InsightItem(Insight insight) {
+			this.id = insight.id;
+			this.uniqueId = insight.uniqueId;
+			this.content = insight.content;
+			this.endDate = insight.endDate;
+			this.validated = insight.validated;
+			this.validationScore = insight.validationScore;
+			this.sponsored = insight.sponsored;
+		}
+
+		public boolean isValidatedTrue() {
+			return (validationScore > Insight.INSIGHT_VALIDATED_TRUE_MINVAL);
+		}
+		public boolean isValidatedFalse() {
+			return (validationScore < Insight.INSIGHT_VALIDATED_FALSE_MAXVAL);
+		}
+		public boolean isValidatedUnknown() {
+			return (validationScore >= Insight.INSIGHT_VALIDATED_FALSE_MAXVAL && validationScore <= Insight.INSIGHT_VALIDATED_TRUE_MINVAL);
+		}
+	}
+
+	/** The fields of a user needed to display its avatar and name */
+	public static class UserItem implements Serializable {
+		public Long id;
+		public String userName;
+		public Long facebookUserId;
+		private String avatarHashCode;
+
+		public UserItem(User user) {
+			this.id = user.id;
+			this.userName = user.userName;
+			this.facebookUserId = user.facebookUserId;
+			this.avatarHashCode = user.avatarHashCode();
+		}
+
+		public String avatarHashCode() {
+			return avatarHashCode;
+		}
+	}
+
+	public static class TagItem implements Serializable {
+		public Long id;
+		public String label;
+
+		public TagItem(Long id, String label) {
+			this.id = id;
+			this.label = label;
+		}
+	}
+
+	public static class InsightActivityItem implements Serializable {
+		public InsightItem insight;
+		public long voteChangeCount;
+		public long newAgreeCount;
+		public long newDisagreeCount;
+		public long newFavoriteCount;
+
+		public InsightActivityItem(InsightActivity activity) {
+			this.insight = new InsightItem(activity.insight);
+			this.voteChangeCount = activity.voteChangeCount;
+			this.newAgreeCount = activity.newAgreeCount;
+			this.newDisagreeCount = activity.newDisagreeCount;
+			this.newFavoriteCount = activity.newFavoriteCount;
+		}
+	}
+
+	public static class UserActivityItem implements Serializable {
+		public UserItem followedUser;
+		public long newInsightCount;
+		public long newVoteCount;
+
+		public UserActivityItem(UserActivity activity) {
+			this.followedUser = new UserItem(activity.followedUser);
+			this.newInsightCount = activity.newInsightCount;
+			this.newVoteCount = activity.newVoteCount;
+		}
+	}
+
+	public static class TagActivityItem implements Serializable {
+		public TagItem tag;
+		public long newInsightCount;
+
+		public TagActivityItem(TagActivity activity) {
+			this.tag = new TagItem(activity.tag.id, activity.tag.label);
+			this.newInsightCount = activity.newInsightCount;
+		}
+	}
+
+	public static class FeaturedSponsorItem implements Serializable {
+		public UserItem sponsor;
+		public List<InsightItem> insights = new ArrayList<InsightItem>();
+
+		public FeaturedSponsorItem(FeaturedSponsor featuredSponsor) {
+			this.sponsor = new UserItem(featuredSponsor.sponsor);
+			for (Insight insight : featuredSponsor.insights) {
+				this.insights.add(new InsightItem(insight));
+			}
+		}
+	}
+}
@@ -0,0 +1,20 @@
+package helpers.export;
+
+/**
+ * Encoding of a column of a {@link ColumnarWriter} file
+ */
+public enum ColumnType {
+
+	/** dates, as the difference in milliseconds with the previous row (the rows are sorted by date) */
+	DATE,
+
+	/** ids of objects, as indexes in the sorted list of the distinct ids of the column */
+	ID,
+
+	LONG,
+
+	DOUBLE,
+
+	/** strings, as indexes in the list of the distinct strings of the column (enums, user-agents...) */
+	STRING
+}
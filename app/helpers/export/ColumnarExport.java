@@ -0,0 +1,204 @@
+package helpers.export;
+
+import helpers.analytics.DailyRollup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.joda.time.DateMidnight;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+import play.Logger;
+import play.Play;
+import play.db.jpa.JPA;
+
+/**
+ * Exports the votes, scores, trends and visits to a directory, one {@link ColumnarWriter} file per table and day:
+ * <pre>
+ * Vote/2011-06-10.col.gz
+ * UserInsightVisit/2011-06-10.col.gz
+ * manifest.properties : last exported day and number of rows of each file
+ * </pre>
+ * Each run only exports the days following the last exported one, up to the last complete day.
+ * The scores are exported on the day of their last update: a newer file has the current score of a user on an insight.
+ */
+public class ColumnarExport {
+
+	static final String MANIFEST = "manifest.properties";
+
+	private static final DateTimeFormatter DAY = DateTimeFormat.forPattern("yyyy-MM-dd");
+
+	/** a table to export: the query of the rows of a day (between :from and :to), sorted by date, and its columns */
+	static class Table {
+		final String name;
+		final String query;
+		final String[] columns;
+		final ColumnType[] types;
+
+		Table(String name, String query, String[] columns, ColumnType[] types) {
+			this.name = name;
+			this.query = query;
+			this.columns = columns;
+			this.types = types;
+		}
+	}
+
+	static final List<Table> TABLES = new ArrayList<Table>();
+	static {
+		TABLES.add(new Table("Vote",
+				"select v.creationDate, v.id, v.user.id, v.insight.id, v.state, v.status from Vote v " +
+				"where v.creationDate >= :from and v.creationDate < :to order by v.creationDate",
+				new String[] { "creationDate", "id", "user", "insight", "state", "status" },
+				new ColumnType[] { ColumnType.DATE, ColumnType.LONG, ColumnType.ID, ColumnType.ID, ColumnType.STRING, ColumnType.STRING }));
+		TABLES.add(new Table("UserInsightScore",
+				"select s.lastUpdate, s.id, s.user.id, s.insight.id, s.score from UserInsightScore s " +
+				"where s.lastUpdate >= :from and s.lastUpdate < :to order by s.lastUpdate",
+				new String[] { "lastUpdate", "id", "user", "insight", "score" },
+				new ColumnType[] { ColumnType.DATE, ColumnType.LONG, ColumnType.ID, ColumnType.ID, ColumnType.DOUBLE }));
+		TABLES.add(new Table("InsightTrend",
+				"select t.trendDate, t.id, t.insight.id, t.occurenceProbability, t.agreeCount, t.disagreeCount from InsightTrend t " +
+				"where t.trendDate >= :from and t.trendDate < :to order by t.trendDate",
+				new String[] { "trendDate", "id", "insight", "occurenceProbability", "agreeCount", "disagreeCount" },
+				new ColumnType[] { ColumnType.DATE, ColumnType.LONG, ColumnType.ID, ColumnType.DOUBLE, ColumnType.LONG, ColumnType.LONG }));
+		TABLES.add(visits("UserListInsightsVisit", null, null));
+		TABLES.add(visits("UserInsightVisit", "insight.id", ColumnType.ID));
+		TABLES.add(visits("UserTopicVisit", "topic.id", ColumnType.ID));
+		TABLES.add(visits("UserExpertVisit", "expert.id", ColumnType.ID));
+		TABLES.add(visits("UserListExpertsVisit", null, null));
+		TABLES.add(visits("UserInsightSearchVisit", "searchKeyWords", ColumnType.STRING));
+	}
+
+	/**
+	 * @param field : the field of this type of visit, null if none
+	 */
+	private static Table visits(String visitType, String field, ColumnType type) {
+		List<String> columns = new ArrayList<String>();
+		List<ColumnType> types = new ArrayList<ColumnType>();
+		String[] common = { "creationDate", "id", "user.id", "ip", "userAgent", "application" };
+		ColumnType[] commonTypes = { ColumnType.DATE, ColumnType.LONG, ColumnType.ID, ColumnType.STRING, ColumnType.STRING, ColumnType.STRING };
+		for (int i = 0; i < common.length; i++) {
+			columns.add(common[i]);
+			types.add(commonTypes[i]);
+		}
+		if (field != null) {
+			columns.add(field);
+			types.add(type);
+		}
+		StringBuilder select = new StringBuilder();
+		for (String column : columns) {
+			select.append(select.length() == 0 ? "select v." : ", v.").append(column);
+		}
+		// user.id is exported as user
+		String[] names = new String[columns.size()];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = columns.get(i).replace(".id", "");
+		}
+		return new Table(visitType,
+				select + " from " + visitType + " v where v.creationDate >= :from and v.creationDate < :to order by v.creationDate",
+				names, types.toArray(new ColumnType[types.size()]));
+	}
+
+	private final File directory;
+	private final Properties manifest = new Properties();
+
+	public ColumnarExport(File directory) throws IOException {
+		this.directory = directory;
+		File manifestFile = new File(directory, MANIFEST);
+		if (manifestFile.exists()) {
+			InputStream in = new FileInputStream(manifestFile);
+			try {
+				manifest.load(in);
+			} finally {
+				in.close();
+			}
+		}
+	}
+
+	/**
+	 * @return the directory of the exports (export.columnar.dir), null if the export is not configured
+	 */
+	public static File getDirectory() {
+		String name = Play.configuration.getProperty("export.columnar.dir");
+		if (name == null || name.trim().length() == 0) {
+			return null;
+		}
+		return new File(name).isAbsolute() ? new File(name) : Play.getFile(name);
+	}
+
+	/**
+	 * Exports the days of each table following its last exported day, up to lastDay
+	 * @return the number of exported days, of all the tables
+	 */
+	public int export(DateMidnight lastDay) throws IOException {
+		int days = 0;
+		for (Table table : TABLES) {
+			DateMidnight firstDay = firstMissingDay(table);
+			for (DateMidnight day = firstDay; !day.isAfter(lastDay); day = day.plusDays(1)) {
+				export(table, day);
+				days++;
+			}
+		}
+		return days;
+	}
+
+	/**
+	 * @return the day following the last exported day of this table, DailyRollup.FIRST_DAY if none
+	 */
+	DateMidnight firstMissingDay(Table table) {
+		String lastExported = manifest.getProperty(table.name + ".lastDay");
+		return lastExported == null ? DailyRollup.FIRST_DAY : new DateMidnight(DAY.parseDateTime(lastExported)).plusDays(1);
+	}
+
+	private void export(Table table, DateMidnight day) throws IOException {
+		List<Object[]> rows = JPA.em().createQuery(table.query)
+				.setParameter("from", day.toDate())
+				.setParameter("to", day.plusDays(1).toDate())
+				.getResultList();
+		String dayName = DAY.print(day);
+		if (!rows.isEmpty()) {
+			ColumnarWriter writer = new ColumnarWriter(table.columns, table.types);
+			for (Object[] row : rows) {
+				writer.addRow(row);
+			}
+			File tableDirectory = new File(directory, table.name);
+			tableDirectory.mkdirs();
+			// written aside and renamed, not to leave a partial file if the export stops
+			File file = new File(tableDirectory, dayName + ".col.gz");
+			File partial = new File(tableDirectory, dayName + ".col.gz.part");
+			writer.write(partial);
+			if (!partial.renameTo(file)) {
+				file.delete();
+				if (!partial.renameTo(file)) {
+					throw new IOException("Cannot rename " + partial + " to " + file);
+				}
+			}
+			manifest.setProperty(table.name + "." + dayName + ".rows", String.valueOf(rows.size()));
+			Logger.debug("ColumnarExport: %s rows of %s exported for %s", rows.size(), table.name, dayName);
+		}
+		manifest.setProperty(table.name + ".lastDay", dayName);
+		saveManifest();
+	}
+
+	private void saveManifest() throws IOException {
+		File partial = new File(directory, MANIFEST + ".part");
+		OutputStream out = new FileOutputStream(partial);
+		try {
+			manifest.store(out, "Exported days, see helpers.export.ColumnarExport");
+		} finally {
+			out.close();
+		}
+		File manifestFile = new File(directory, MANIFEST);
+		manifestFile.delete();
+		if (!partial.renameTo(manifestFile)) {
+			throw new IOException("Cannot rename " + partial + " to " + manifestFile);
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package helpers.export;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads a file written by {@link ColumnarWriter}: the values of each column, decoded
+ * (Date, Long, Double or String, null for the null values).
+ */
+public class ColumnarReader {
+
+	private int rowCount;
+	private final Map<String, ColumnType> types = new LinkedHashMap<String, ColumnType>();
+	private final Map<String, Object[]> columns = new LinkedHashMap<String, Object[]>();
+
+	public ColumnarReader(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(file))));
+		try {
+			if (!ColumnarWriter.MAGIC.equals(in.readUTF()) || in.readInt() != ColumnarWriter.VERSION) {
+				throw new IOException(file + " is not a columnar file of version " + ColumnarWriter.VERSION);
+			}
+			rowCount = in.readInt();
+			int columnCount = in.readInt();
+			for (int column = 0; column < columnCount; column++) {
+				String name = in.readUTF();
+				ColumnType type = ColumnType.valueOf(in.readUTF());
+				types.put(name, type);
+				columns.put(name, readColumn(in, type));
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	public int rowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * @return the names and types of the columns, in the order they were written
+	 */
+	public Map<String, ColumnType> types() {
+		return types;
+	}
+
+	/**
+	 * @return the values of the column for each row, null if there is no such column
+	 */
+	public Object[] column(String name) {
+		return columns.get(name);
+	}
+
+	private Object[] readColumn(DataInputStream in, ColumnType type) throws IOException {
+		boolean[] isNull = new boolean[rowCount];
+		if (in.readBoolean()) {
+			byte[] nulls = new byte[(rowCount + 7) / 8];
+			in.readFully(nulls);
+			for (int i = 0; i < rowCount; i++) {
+				isNull[i] = (nulls[i / 8] & (1 << (i % 8))) != 0;
+			}
+		}
+		Object[] values = new Object[rowCount];
+		switch (type) {
+		case DATE:
+			long time = 0;
+			for (int i = 0; i < rowCount; i++) {
+				if (!isNull[i]) {
+					time += readVarLong(in);
+					values[i] = new Date(time);
+				}
+			}
+			break;
+		case ID:
+			long[] dictionary = new long[(int) readVarLong(in)];
+			long id = 0;
+			for (int i = 0; i < dictionary.length; i++) {
+				id += readVarLong(in);
+				dictionary[i] = id;
+			}
+			for (int i = 0; i < rowCount; i++) {
+				if (!isNull[i]) {
+					values[i] = dictionary[(int) readVarLong(in)];
+				}
+			}
+			break;
+		case LONG:
+			for (int i = 0; i < rowCount; i++) {
+				if (!isNull[i]) {
+					values[i] = readVarLong(in);
+				}
+			}
+			break;
+		case DOUBLE:
+			for (int i = 0; i < rowCount; i++) {
+				if (!isNull[i]) {
+					values[i] = in.readDouble();
+				}
+			}
+			break;
+		case STRING:
+			String[] strings = new String[(int) readVarLong(in)];
+			for (int i = 0; i < strings.length; i++) {
+				byte[] bytes = new byte[(int) readVarLong(in)];
+				in.readFully(bytes);
+				strings[i] = new String(bytes, "UTF-8");
+			}
+			for (int i = 0; i < rowCount; i++) {
+				if (!isNull[i]) {
+					values[i] = strings[(int) readVarLong(in)];
+				}
+			}
+			break;
+		}
+		return values;
+	}
+
+	private static long readVarLong(DataInputStream in) throws IOException {
+		long zigzag = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = in.readByte();
+			zigzag |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return (zigzag >>> 1) ^ -(zigzag & 1);
+	}
+}
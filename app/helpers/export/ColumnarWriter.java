@@ -0,0 +1,162 @@
+package helpers.export;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes rows to a gzipped file, column by column, each column with the encoding of its {@link ColumnType}:
+ * <pre>
+ * "beansight-columnar", version, rows, columns
+ * for each column: name, type, has nulls, [null bitmap], values of the non null rows
+ * </pre>
+ * The numbers are written as variable length zigzag longs, so that small values and deltas take one or two bytes.
+ * See {@link ColumnarReader} to read them back.
+ */
+public class ColumnarWriter {
+
+	static final String MAGIC = "beansight-columnar";
+	static final int VERSION = 1;
+
+	private final String[] names;
+	private final ColumnType[] types;
+	private final List<Object[]> rows = new ArrayList<Object[]>();
+
+	public ColumnarWriter(String[] names, ColumnType[] types) {
+		if (names.length != types.length) {
+			throw new IllegalArgumentException("One type per column");
+		}
+		this.names = names;
+		this.types = types;
+	}
+
+	/**
+	 * @param values : Date, Number or String (or enum), in the order of the columns
+	 */
+	public void addRow(Object... values) {
+		if (values.length != names.length) {
+			throw new IllegalArgumentException("Expected " + names.length + " values, got " + values.length);
+		}
+		rows.add(values);
+	}
+
+	public int rowCount() {
+		return rows.size();
+	}
+
+	/**
+	 * Writes the rows to this file, replacing it
+	 */
+	public void write(File file) throws IOException {
+		DataOutputStream out = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(file))));
+		try {
+			out.writeUTF(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(rows.size());
+			out.writeInt(names.length);
+			for (int column = 0; column < names.length; column++) {
+				out.writeUTF(names[column]);
+				out.writeUTF(types[column].name());
+				writeColumn(out, column);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private void writeColumn(DataOutputStream out, int column) throws IOException {
+		// bit i set if the value of row i is null
+		byte[] nulls = new byte[(rows.size() + 7) / 8];
+		boolean hasNulls = false;
+		List<Object> values = new ArrayList<Object>(rows.size());
+		for (int i = 0; i < rows.size(); i++) {
+			Object value = rows.get(i)[column];
+			if (value == null) {
+				nulls[i / 8] |= 1 << (i % 8);
+				hasNulls = true;
+			} else {
+				values.add(value);
+			}
+		}
+		out.writeBoolean(hasNulls);
+		if (hasNulls) {
+			out.write(nulls);
+		}
+		switch (types[column]) {
+		case DATE:
+			long previous = 0;
+			for (Object value : values) {
+				long time = ((Date) value).getTime();
+				writeVarLong(out, time - previous);
+				previous = time;
+			}
+			break;
+		case ID:
+			TreeSet<Long> distinct = new TreeSet<Long>();
+			for (Object value : values) {
+				distinct.add(((Number) value).longValue());
+			}
+			long[] dictionary = new long[distinct.size()];
+			int index = 0;
+			long previousId = 0;
+			writeVarLong(out, dictionary.length);
+			for (long id : distinct) {
+				dictionary[index++] = id;
+				writeVarLong(out, id - previousId);
+				previousId = id;
+			}
+			for (Object value : values) {
+				writeVarLong(out, Arrays.binarySearch(dictionary, ((Number) value).longValue()));
+			}
+			break;
+		case LONG:
+			for (Object value : values) {
+				writeVarLong(out, ((Number) value).longValue());
+			}
+			break;
+		case DOUBLE:
+			for (Object value : values) {
+				out.writeDouble(((Number) value).doubleValue());
+			}
+			break;
+		case STRING:
+			Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+			for (Object value : values) {
+				String string = value.toString();
+				if (!strings.containsKey(string)) {
+					strings.put(string, strings.size());
+				}
+			}
+			writeVarLong(out, strings.size());
+			for (String string : strings.keySet()) {
+				byte[] bytes = string.getBytes("UTF-8");
+				writeVarLong(out, bytes.length);
+				out.write(bytes);
+			}
+			for (Object value : values) {
+				writeVarLong(out, strings.get(value.toString()));
+			}
+			break;
+		}
+	}
+
+	private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+		// zigzag: small negative values are small too
+		long zigzag = (value << 1) ^ (value >> 63);
+		while ((zigzag & ~0x7FL) != 0) {
+			out.writeByte((int) ((zigzag & 0x7F) | 0x80));
+			zigzag >>>= 7;
+		}
+		out.writeByte((int) zigzag);
+	}
+}
@@ -1,27 +1,27 @@
 package jobs;
 
 import helpers.TimeHelper;
+import helpers.analytics.DailyRollup;
+import helpers.analytics.DailyRollup.DailyCount;
 
-import java.util.Date;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 import models.Insight;
 import models.User;
-import models.Vote;
 import models.analytics.DailyTotalComment;
 import models.analytics.DailyTotalInsight;
 import models.analytics.DailyTotalVote;
+import models.analytics.DailyUserActivity;
+import models.analytics.DailyVisitSketch;
 import models.analytics.InsightDailyVote;
 import models.analytics.UserInsightDailyCreation;
 import models.analytics.UserInsightDailyVote;
 
 import org.joda.time.DateMidnight;
-import org.joda.time.DateTime;
-import org.joda.time.DateTimeConstants;
 
 import play.Logger;
+import play.db.jpa.JPA;
 import play.jobs.Every;
 import play.jobs.Job;
 import play.jobs.On;
@@ -40,117 +40,75 @@ public class AnalyticsJob extends Job {
     	
     	Logger.info("AnalyticsJob begin");
     	
-    	// since this job starts after midnight we are calculating how many insights 
-    	// have been created for yesterday (and potentially for previous days if 
-    	// it's the first time the job running ...)
-    	DateTime startOfDayForCalculation = new DateTime(new DateMidnight()).minusDays(1);
+    	// since this job starts after midnight we are calculating the analytics of yesterday
+    	// and of all the previous days not computed yet (if the job hasn't run for some time)
+    	DateMidnight lastDay = new DateMidnight().minusDays(1);
     	
-    	doCalculationForUserInsightDailyCreation(startOfDayForCalculation);
-    	doCalculationForUserInsightDailyVote(startOfDayForCalculation);
-    	doCalculationForInsightDailyVote(startOfDayForCalculation);
+    	doCalculationForUserInsightDailyCreation(lastDay);
+    	doCalculationForUserInsightDailyVote(lastDay);
+    	doCalculationForInsightDailyVote(lastDay);
     	
-    	DailyTotalInsight.compute(startOfDayForCalculation);
-    	DailyTotalVote.compute(startOfDayForCalculation);
-    	DailyTotalComment.compute(startOfDayForCalculation);
+    	DailyTotalInsight.compute(lastDay);
+    	DailyTotalVote.compute(lastDay);
+    	DailyTotalComment.compute(lastDay);
+    	DailyUserActivity.compute(lastDay);
+    	DailyVisitSketch.compute(lastDay);
     	
         Logger.info("AnalyticsJob end");
     }
     
     
-    private void doCalculationForUserInsightDailyCreation(DateTime startOfDayForCalculation) {
-    	if (UserInsightDailyCreation.findIfAnalyticExistsForDate(startOfDayForCalculation.toDate()) == true) {
-    		return; // stop
-    	}
-    	DateTime endOfDayForCalculation = startOfDayForCalculation.plusDays(1).minusSeconds(1);
-		List<Object[]> rows = Insight.find("select i.creator, count(i.id) from Insight i where i.creationDate between ? and  ? group by i.creator.id", startOfDayForCalculation.toDate(), endOfDayForCalculation.toDate()).fetch();
-		
-		for (Object[] row : rows) {
-			UserInsightDailyCreation analytic = new UserInsightDailyCreation(startOfDayForCalculation.toDate(), (User)row[0], (Long)row[1]);
-			analytic.save();
+    private void doCalculationForUserInsightDailyCreation(DateMidnight lastDay) {
+		DateMidnight firstDay = DailyRollup.firstMissingDay(UserInsightDailyCreation.class, lastDay);
+		if (firstDay == null) {
+			return;
 		}
+		List<DailyCount> counts = DailyRollup.countByDay("select year(i.creationDate), month(i.creationDate), day(i.creationDate), i.creator.id, count(i.id) " +
+				"from Insight i " +
+				"where i.creationDate >= :from and i.creationDate < :to " +
+				"group by year(i.creationDate), month(i.creationDate), day(i.creationDate), i.creator.id", firstDay, lastDay);
 		
-		// recursive call to create previous records if they don't exist yet
-		startOfDayForCalculation = startOfDayForCalculation.minusDays(1);
-		doCalculationForUserInsightDailyCreation(startOfDayForCalculation);
+		List<UserInsightDailyCreation> analytics = new ArrayList<UserInsightDailyCreation>(counts.size());
+		for (DailyCount count : counts) {
+			analytics.add(new UserInsightDailyCreation(count.day, JPA.em().getReference(User.class, count.key), count.count));
+		}
+		DailyRollup.save(analytics);
     }
     
-    
-    private void doCalculationForUserInsightDailyVote(DateTime startOfDayForCalculation) {
-    	if (UserInsightDailyVote.findIfAnalyticExistsForDate(startOfDayForCalculation.toDate()) == true) {
-    		return; // stop
-    	}
-    	DateTime endOfDayForCalculation = startOfDayForCalculation.plusDays(1).minusSeconds(1);
-		List<Object[]> rows = Vote.find("select v.user, count(v.id) from Vote v where v.creationDate between ? and  ? group by v.user.id", startOfDayForCalculation.toDate(), endOfDayForCalculation.toDate()).fetch();
-		
-		for (Object[] row : rows) {
-			UserInsightDailyVote analytic = new UserInsightDailyVote(startOfDayForCalculation.toDate(), (User)row[0], (Long)row[1]);
-			analytic.save();
+    private void doCalculationForUserInsightDailyVote(DateMidnight lastDay) {
+		DateMidnight firstDay = DailyRollup.firstMissingDay(UserInsightDailyVote.class, lastDay);
+		if (firstDay == null) {
+			return;
 		}
+		List<DailyCount> counts = DailyRollup.countByDay("select year(v.creationDate), month(v.creationDate), day(v.creationDate), v.user.id, count(v.id) " +
+				"from Vote v " +
+				"where v.creationDate >= :from and v.creationDate < :to " +
+				"group by year(v.creationDate), month(v.creationDate), day(v.creationDate), v.user.id", firstDay, lastDay);
 		
-		// recursive call to create previous records if they don't exist yet
-		startOfDayForCalculation = startOfDayForCalculation.minusDays(1);
-		doCalculationForUserInsightDailyVote(startOfDayForCalculation);
+		List<UserInsightDailyVote> analytics = new ArrayList<UserInsightDailyVote>(counts.size());
+		for (DailyCount count : counts) {
+			analytics.add(new UserInsightDailyVote(count.day, JPA.em().getReference(User.class, count.key), count.count));
+		}
+		DailyRollup.save(analytics);
     }
     
-    private void doCalculationForInsightDailyVote(DateTime startOfDayForCalculation) {
-    	if (InsightDailyVote.findIfAnalyticExistsForDate(startOfDayForCalculation.toDate()) == true) {
-    		return; // stop
-    	}
-    	DateTime endOfDayForCalculation = startOfDayForCalculation.plusDays(1).minusSeconds(1);
-
-    	// create the date in java.util.Date to avoid creating it each time in the loops
-    	Date startDate = startOfDayForCalculation.toDate();
-
-    	//
-		// Retrieving disagree count vote for insights for date
-		//
-		String q1 = "select v.insight, count(v.id) " +
-				"from Vote v " +
-				"where v.creationDate between :start and :end " +
-				"and v.state = 0 " +
-				"group by v.insight.id"; 
-
-		
-		Map<Long, InsightDailyVote> resultsAggregatorMap = new HashMap<Long, InsightDailyVote>();
-		List<Object[]> r1 = Insight.find(q1).bind("start", startOfDayForCalculation.toDate()).bind("end", endOfDayForCalculation.toDate()).fetch();
-		for (Object[] o : r1) {
-			System.out.println(o[0] + ":" + o[1]);
-			Insight insight = (Insight)o[0];
-			Long disagreeCount = (Long)o[1];
-			resultsAggregatorMap.put(insight.id, new InsightDailyVote(startDate, insight, 0, disagreeCount));
+    private void doCalculationForInsightDailyVote(DateMidnight lastDay) {
+		DateMidnight firstDay = DailyRollup.firstMissingDay(InsightDailyVote.class, lastDay);
+		if (firstDay == null) {
+			return;
 		}
-		
-		//
-		// updating with agree count vote for this insight for date
-		//
-		String q2 = "select v.insight, count(v.id) " +
+		// agree (state 1) and disagree (state 0) votes of each insight and each day, without loading the insights
+		List<Object[]> rows = DailyRollup.rowsByDay("select year(v.creationDate), month(v.creationDate), day(v.creationDate), v.insight.id, " +
+				"sum(case when v.state = 1 then 1 else 0 end), sum(case when v.state = 0 then 1 else 0 end) " +
 				"from Vote v " +
-				"where v.creationDate between :start and :end " +
-				"and v.state = 1 " +
-				"group by v.insight.id"; 
-		
-		List<Object[]> r2 = Insight.find(q2).bind("start", startOfDayForCalculation.toDate()).bind("end", endOfDayForCalculation.toDate()).fetch();
-		for (Object[] o : r2) {
-			Insight insight = (Insight)o[0];
-			Long agreeCount = (Long)o[1];
-			
-			// search if InsightDailyVote exists to merge agreeCount  
-			InsightDailyVote insightDailyVote = resultsAggregatorMap.get(insight.id);
-			if (insightDailyVote == null) {
-				insightDailyVote = new InsightDailyVote(startDate, insight, agreeCount, 0);
-			} else {
-				insightDailyVote.agreeCount = agreeCount;
-			}
-			
-		}
+				"where v.creationDate >= :from and v.creationDate < :to " +
+				"group by year(v.creationDate), month(v.creationDate), day(v.creationDate), v.insight.id", firstDay, lastDay);
 		
-		// save in database
-		for (InsightDailyVote analytic : resultsAggregatorMap.values()) {
-			analytic.save();
+		List<InsightDailyVote> analytics = new ArrayList<InsightDailyVote>(rows.size());
+		for (Object[] row : rows) {
+			analytics.add(new InsightDailyVote(DailyRollup.day(row), JPA.em().getReference(Insight.class, row[3]),
+					((Number) row[4]).longValue(), ((Number) row[5]).longValue()));
 		}
-		
-		// recursive call to create previous records if they don't exist yet
-		startOfDayForCalculation = startOfDayForCalculation.minusDays(1);
-		doCalculationForInsightDailyVote(startOfDayForCalculation);
+		DailyRollup.save(analytics);
     }
 }
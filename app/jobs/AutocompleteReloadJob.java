@@ -0,0 +1,18 @@
+package jobs;
+
+import helpers.autocomplete.Autocomplete;
+import play.jobs.Every;
+import play.jobs.Job;
+
+/**
+ * Reloads the autocompletion indexes, to take the new popularity of users and tags into account
+ */
+@Every("1h")
+public class AutocompleteReloadJob extends Job {
+
+	@Override
+	public void doJob() throws Exception {
+		Autocomplete.users.reload();
+		Autocomplete.tags.reload();
+	}
+}
@@ -0,0 +1,37 @@
+package jobs;
+
+import helpers.TimeHelper;
+import helpers.export.ColumnarExport;
+
+import java.io.File;
+
+import org.joda.time.DateMidnight;
+
+import play.Logger;
+import play.jobs.Every;
+import play.jobs.Job;
+
+/**
+ * Exports the days completed since the last export to export.columnar.dir, every night after the AnalyticsJob.
+ * Does nothing if export.columnar.dir is not set.
+ */
+@Every("1min")
+public class ColumnarExportJob extends Job {
+
+	@Override
+	public void doJob() throws Exception {
+		if (!TimeHelper.hourAndDayCheck(2, null)) {
+			return;
+		}
+		File directory = ColumnarExport.getDirectory();
+		if (directory == null) {
+			return;
+		}
+		directory.mkdirs();
+		// the job runs every minute of this hour, only the first run has days to export
+		int days = new ColumnarExport(directory).export(new DateMidnight().minusDays(1));
+		if (days > 0) {
+			Logger.info("ColumnarExportJob: %s days of tables exported to %s", days, directory);
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package jobs;
+
+import helpers.analytics.EngagementCounters;
+import helpers.analytics.EngagementCounters.Key;
+
+import java.util.Map;
+
+import models.analytics.InsightDailyEngagement;
+import play.Logger;
+import play.jobs.Every;
+import play.jobs.Job;
+import play.jobs.OnApplicationStop;
+
+/**
+ * Adds the engagement counted in memory since the last run to the InsightDailyEngagement table,
+ * with one insert or update per insight and day. Also runs when the application stops.
+ *
+ * If the transaction fails (in doJob or when it is committed), the drained counts are put back in the counters,
+ * to be written by the next run.
+ */
+@Every("1min")
+@OnApplicationStop
+public class EngagementWriterJob extends Job {
+
+	/** the counts drained by the current run, null once it is over */
+	private Map<Key, long[]> drained;
+
+	@Override
+	public void doJob() {
+		drained = EngagementCounters.PENDING.drain();
+		for (Map.Entry<Key, long[]> counts : drained.entrySet()) {
+			InsightDailyEngagement.add(counts.getKey().insightId, counts.getKey().day, counts.getValue());
+		}
+	}
+
+	@Override
+	public void onException(Throwable e) {
+		if (drained != null && !drained.isEmpty()) {
+			EngagementCounters.PENDING.restore(drained);
+			Logger.warn("EngagementWriterJob: engagement of %s insight days not written, put back for the next run", drained.size());
+		}
+		super.onException(e);
+	}
+
+	@Override
+	public void _finally() {
+		drained = null;
+		super._finally();
+	}
+}
@@ -0,0 +1,19 @@
+package jobs;
+
+import helpers.analytics.HeavyHitters;
+import play.jobs.Every;
+import play.jobs.Job;
+
+/**
+ * Reloads the rolling tops from the database, to take the events of the other application servers into account
+ * and drop the ones whose transaction has been rolled back. The past days are read from the daily rollups,
+ * see {@link HeavyHitters#load()}.
+ */
+@Every("10mn")
+public class HeavyHittersReloadJob extends Job {
+
+	@Override
+	public void doJob() throws Exception {
+		HeavyHitters.load();
+	}
+}
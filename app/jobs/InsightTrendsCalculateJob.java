@@ -49,9 +49,6 @@ public class InsightTrendsCalculateJob extends Job {
     		// no more insinghts to process
     		// so we remove the PAGE_TO_PROCESS_KEY from the cache
     		Cache.delete(PAGE_TO_PROCESS_KEY);
-        	// delete the trends list from the cache so that ui get new calculated trends value
-    		Logger.info("InsightTrendsCalculateJob : deleting cache agreeInsightTrendsCache");
-        	Cache.delete("agreeInsightTrendsCache");
     	}
     	
         Logger.info("InsightTrendsCalculateJob end");
@@ -0,0 +1,17 @@
+package jobs;
+
+import helpers.cache.ReferenceData;
+import play.jobs.Every;
+import play.jobs.Job;
+
+/**
+ * Reloads the reference data saved by an admin on another application server
+ */
+@Every("1mn")
+public class ReferenceDataReloadJob extends Job {
+
+	@Override
+	public void doJob() throws Exception {
+		ReferenceData.reloadIfChanged();
+	}
+}
@@ -0,0 +1,58 @@
+package jobs;
+
+import helpers.analytics.BatchInsert;
+import helpers.analytics.VisitBuffer;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import models.analytics.UserVisit;
+
+import play.Logger;
+import play.db.jpa.JPA;
+import play.jobs.Every;
+import play.jobs.Job;
+import play.jobs.OnApplicationStop;
+
+/**
+ * Writes the visits waiting in the {@link VisitBuffer}, with one JDBC batch of inserts per type of visit (see {@link BatchInsert}).
+ * Also runs when the application stops, not to lose the last visits.
+ *
+ * Each batch is committed on its own: a batch that fails doesn't roll back the previous ones, and is put back in the buffer.
+ */
+@Every("1s")
+@OnApplicationStop
+public class VisitWriterJob extends Job {
+
+	/** one writer at a time, the batches of a late writer are not written twice */
+	private static final ReentrantLock writing = new ReentrantLock();
+
+	private static long droppedReported = 0;
+
+	@Override
+	public void doJob() throws Exception {
+		if (!writing.tryLock()) {
+			return;
+		}
+		try {
+			List<UserVisit> batch;
+			while (!(batch = VisitBuffer.drainBatch()).isEmpty()) {
+				try {
+					BatchInsert.insert(batch);
+					JPA.em().getTransaction().commit();
+					JPA.em().getTransaction().begin();
+				} catch (Exception e) {
+					VisitBuffer.putBack(batch);
+					throw e;
+				}
+			}
+			long dropped = VisitBuffer.droppedCount();
+			if (dropped > droppedReported) {
+				Logger.warn("VisitWriterJob: %s visits dropped because the buffer was full (%s since startup)", dropped - droppedReported, dropped);
+				droppedReported = dropped;
+			}
+		} finally {
+			writing.unlock();
+		}
+	}
+}
@@ -1,5 +1,7 @@
 package models;
 
+import helpers.cache.ReferenceData;
+
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
@@ -34,8 +36,18 @@ public class Category extends Model {
 		this.scoreMax = 1;
 	}
 	
+	/**
+	 * @return all the categories, from the reference data kept in memory (do not modify them)
+	 */
 	public static List<Category> getAllCategories() {
-		return Category.findAll();
+		return ReferenceData.categories();
+	}
+
+	/**
+	 * @return the category with this id from the reference data kept in memory (do not modify it), null if none
+	 */
+	public static Category findCachedById(Long id) {
+		return ReferenceData.category(id);
 	}
 
 	public static Category findByLabel(String label) {
@@ -1,5 +1,7 @@
 package models;
 
+import helpers.cache.PageCache;
+
 import java.util.Date;
 
 import javax.persistence.Entity;
@@ -7,6 +9,9 @@ import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.Lob;
 import javax.persistence.ManyToOne;
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
 
 import jregex.Pattern;
 import jregex.Replacer;
@@ -61,4 +66,14 @@ public class Comment extends Model {
 			return false;
 		}
 	}
+
+	/**
+	 * the comments are displayed on the cached page of the insight
+	 */
+	@PostPersist
+	@PostUpdate
+	@PostRemove
+	protected void invalidateInsightPage() {
+		PageCache.invalidateInsight(insight.uniqueId);
+	}
 }
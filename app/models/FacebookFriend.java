@@ -1,10 +1,15 @@
 package models;
 
+import helpers.cache.SidebarSnapshot;
+
 import javax.persistence.CascadeType;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
 
 import play.db.jpa.Model;
 
@@ -105,4 +110,12 @@ public class FacebookFriend extends Model {
 		
 		return sb.toString();
 	}
+
+	/** the sidebar of the owner of the friendship suggests the friends not added yet */
+	@PostPersist
+	@PostUpdate
+	@PostRemove
+	protected void invalidateSidebar() {
+		SidebarSnapshot.invalidate(user.id);
+	}
 }
@@ -1,5 +1,7 @@
 package models;
 
+import helpers.cache.ReferenceData;
+
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
@@ -54,8 +56,12 @@ public class FeaturedInsight extends Model {
 	 * @return
 	 */
 	public static List<FeaturedInsight> findActive(List<Language> langs) {
-		Date today = new Date();
-		return FeaturedInsight.find("startDate < :startDate and endDate > :endDate and insight.lang in (:langs) order by startDate desc").bind("startDate", today).bind("endDate", today).bind("langs", langs).fetch();
+		// the periods are kept in memory, only load the featured insights if some are active
+		List<Long> ids = ReferenceData.activeFeaturedInsightIds(langs);
+		if (ids.isEmpty()) {
+			return new ArrayList<FeaturedInsight>();
+		}
+		return FeaturedInsight.find("id in (:ids) order by startDate desc").bind("ids", ids).fetch();
 	}
 
 }
@@ -1,5 +1,7 @@
 package models;
 
+import helpers.cache.ReferenceData;
+
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
@@ -66,8 +68,12 @@ public class FeaturedSponsor extends Model {
 	 * @return
 	 */
 	public static List<FeaturedSponsor> findActive(List<Language> langs) {
-		Date today = new Date();
-		return FeaturedSponsor.find("startDate < :startDate and endDate > :endDate and language in (:langs) order by startDate desc").bind("startDate", today).bind("endDate", today).bind("langs", langs).fetch();
+		// the periods are kept in memory, only load the featured sponsors if some are active
+		List<Long> ids = ReferenceData.activeFeaturedSponsorIds(langs);
+		if (ids.isEmpty()) {
+			return new ArrayList<FeaturedSponsor>();
+		}
+		return FeaturedSponsor.find("id in (:ids) order by startDate desc").bind("ids", ids).fetch();
 	}
 
 }
@@ -1,6 +1,8 @@
 package models;
 
 import helpers.FormatHelper;
+import helpers.analytics.EngagementCounters;
+import helpers.analytics.EngagementCounters.Engagement;
 
 import java.util.ArrayList;
 import java.util.Date;
@@ -54,7 +56,8 @@ import exceptions.InsightWithSameUniqueIdAndEndDateAlreadyExistsException;
 import ext.StringExtensions;
 
 
-@Indexed
+// the hidden insights are unindexed (see Admin.hideInsight)
+@Indexed(where = "e.hidden = false")
 @Entity
 public class Insight extends Model {
 
@@ -81,7 +84,7 @@ public class Insight extends Model {
 	public Date creationDate;
 
 	/** the date this insight is ending, defined by its creator */
-	// TODO index this
+	@Field(tokenize=false)
 	@Required
 	public Date endDate;
 
@@ -95,6 +98,7 @@ public class Insight extends Model {
 
 	/** the language of the content of this insight */
 	@ManyToOne(fetch=FetchType.LAZY)
+	@Field(tokenize=false)
 	public Language lang;
 	
 	/** Every vote of the current insight */
@@ -109,7 +113,7 @@ public class Insight extends Model {
 	public Set<Tag> tags;
 
 	@ManyToOne(fetch=FetchType.LAZY)
-	@Field
+	@Field(tokenize=false)
 	@Required
 	/** Category of this insight */
 	public Category category;
@@ -125,6 +129,7 @@ public class Insight extends Model {
 	@Exclude
 	public List<Comment> comments;
 
+	@Field(tokenize=false)
 	public boolean hidden;
 	
 	// model denormalization :
@@ -263,6 +268,7 @@ public class Insight extends Model {
 	public Comment addComment(String content, User user) {
 		Comment comment = new Comment(user, this, content);
 		comment.save();
+		EngagementCounters.PENDING.increment(this.id, Engagement.COMMENT);
 
 		// if the user is dangerous, do not sent notifications
 		if(!user.isDangerous) {
@@ -719,30 +725,44 @@ public class Insight extends Model {
 	 * @return an object containing the result list and the total result
 	 */
 	public static InsightResult search(String query, int from, int number, Filter filter) {
-		Category cat = null;
-		if( ! filter.categories.isEmpty()) {
-			for(Category catego : filter.categories) {
-				cat = catego;
-			}
-		}
-		
 		// TODO Steren : this query string construction is temporary, we should better handle this
 		String fullQueryString = "(content:" + query + " OR tags:" + query + ") ";
-		if (cat != null) {
-			fullQueryString += " AND category:" + cat.id;
-		}
 		Logger.info( "SEARCH:" + fullQueryString );
 
 		Query q = Search.search(fullQueryString, Insight.class);
 
-		// create the result object
-		InsightResult result = new InsightResult();
-		result.count = q.count();
+		// the filter is applied inside the index, with filters cached until the index changes
+		q.filter("hidden", "false");
+		if (!filter.categories.isEmpty()) {
+			List<String> categoryIds = new ArrayList<String>();
+			for (Category category : filter.categories) {
+				categoryIds.add(category.getId().toString());
+			}
+			q.filter("category", categoryIds.toArray(new String[categoryIds.size()]));
+		}
+		if (!filter.languages.isEmpty()) {
+			List<String> languageIds = new ArrayList<String>();
+			for (Language language : filter.languages) {
+				languageIds.add(language.getId().toString());
+			}
+			q.filter("lang", languageIds.toArray(new String[languageIds.size()]));
+		}
+		if (filter.closed != null) {
+			// to the day: closed before today or still open today
+			if (filter.closed) {
+				q.filterRange("endDate", null, new Date());
+			} else {
+				q.filterRange("endDate", new Date(), null);
+			}
+		}
 
 		// restrict to a sub group
 		q.page(from, number);
 
+		// create the result object, the count comes from the search made to fetch the page
+		InsightResult result = new InsightResult();
 		result.results = q.fetch();
+		result.count = q.count();
 
 		return result;
 	}
@@ -1,5 +1,7 @@
 package models;
 
+import helpers.cache.SidebarSnapshot;
+
 import play.*;
 import play.db.jpa.*;
 
@@ -96,5 +98,12 @@ public class InsightActivity extends Model {
 		this.notEmpty = true;
 		this.updated = new Date();
 	}
-	
+
+	/** the sidebar of the user displays this activity */
+	@PostPersist
+	@PostUpdate
+	@PostRemove
+	protected void invalidateSidebar() {
+		SidebarSnapshot.invalidate(user.id);
+	}
 }
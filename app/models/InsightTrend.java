@@ -1,5 +1,7 @@
 package models;
 
+import helpers.cache.InsightTrendSeriesCache;
+
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
@@ -7,6 +9,8 @@ import java.util.List;
 
 import javax.persistence.Entity;
 import javax.persistence.ManyToOne;
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
 
 import play.db.jpa.Model;
 
@@ -57,6 +61,13 @@ public class InsightTrend extends Model {
         }
         this.occurenceProbability = num / denum;    
     }
+    
+    /** the cached trend series of the insight doesn't contain this trend */
+    @PostPersist
+    @PostRemove
+    protected void invalidateTrendSeries() {
+    	InsightTrendSeriesCache.invalidate(insight.id);
+    }
  
 }
 
@@ -1,5 +1,6 @@
 package models;
 
+import helpers.cache.ReferenceData;
 import play.*;
 import play.db.jpa.*;
 
@@ -19,7 +20,11 @@ public class Language extends Model {
 	 * Find a language from its label, if nothing is found creates it.
 	 */
 	public static Language findByLabelOrCreate(String label) {
-		Language language = Language.find("byLabel", label).first();
+		Language language = ReferenceData.language(label);
+		if (language != null) {
+			return language;
+		}
+		language = Language.find("byLabel", label).first();
 		if (language == null && !label.equals("none")) {
 			language = new Language(label);
 			language.save();
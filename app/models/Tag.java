@@ -1,5 +1,7 @@
 package models;
 
+import helpers.autocomplete.Autocomplete;
+
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
@@ -14,6 +16,7 @@ import javax.persistence.Enumerated;
 import javax.persistence.FetchType;
 import javax.persistence.ManyToMany;
 import javax.persistence.ManyToOne;
+import javax.persistence.PostPersist;
 
 import controllers.CRUD.Exclude;
 import controllers.CRUD.Hidden;
@@ -158,4 +161,9 @@ public class Tag extends Model {
 		}
 	}
 
+	/** the new tag can be suggested in the autocompletion of tags */
+	@PostPersist
+	protected void addToAutocomplete() {
+		Autocomplete.tags.add(this.id, this.label);
+	}
 }
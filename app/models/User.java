@@ -2,6 +2,14 @@ package models;
 
 import helpers.ImageHelper;
 import helpers.UserCount;
+import helpers.analytics.EngagementCounters;
+import helpers.analytics.EngagementCounters.Engagement;
+import helpers.analytics.HeavyHitters;
+import helpers.analytics.SpaceSaving.Counter;
+import helpers.analytics.VisitBuffer;
+import helpers.autocomplete.Autocomplete;
+import helpers.autocomplete.AutocompleteIndex.Entry;
+import helpers.cache.CurrentUserInfo;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -25,14 +33,15 @@ import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
 import javax.persistence.OneToOne;
 import javax.persistence.OrderBy;
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
 
 import models.Insight.InsightResult;
 import models.Vote.State;
 import models.Vote.Status;
 import models.analytics.UserClientInfo;
 import models.analytics.UserExpertVisit;
-import models.analytics.UserInsightDailyCreation;
-import models.analytics.UserInsightDailyVote;
 import models.analytics.UserInsightSearchVisit;
 import models.analytics.UserInsightVisit;
 import models.analytics.UserListExpertsVisit;
@@ -42,7 +51,6 @@ import models.analytics.UserTopicVisit;
 
 import org.apache.commons.lang.RandomStringUtils;
 import org.hibernate.annotations.Index;
-import org.joda.time.DateTime;
 
 import controllers.CRUD.Exclude;
 import controllers.CRUD.Hidden;
@@ -55,8 +63,6 @@ import play.libs.Codec;
 import play.libs.Crypto;
 import play.modules.search.Field;
 import play.modules.search.Indexed;
-import play.modules.search.Query;
-import play.modules.search.Search;
 import exceptions.CannotVoteTwiceForTheSameInsightException;
 import exceptions.InsightAlreadySharedException;
 import exceptions.InsightWithSameUniqueIdAndEndDateAlreadyExistsException;
@@ -523,7 +529,7 @@ public class User extends Model implements Comparable<User> {
 			lang = this.writtingLanguage.label;
 		}
 		
-		Category category = Category.findById(categoryId);
+		Category category = Category.findCachedById(categoryId);
 		if (category == null) {
 			throw new RuntimeException("Category with id" + categoryId + " doesn't exist.");
 		}
@@ -532,6 +538,7 @@ public class User extends Model implements Comparable<User> {
 
 		Insight i = new Insight(this, insightContent, endDate, category, language);
 		i.save();
+		HeavyHitters.CREATORS.offer(this.id);
 
 		i.addTags(tagLabelList, this);
 
@@ -646,6 +653,11 @@ public class User extends Model implements Comparable<User> {
 			insight.lastUpdated = new Date();
 			insight.save();
 		}
+		HeavyHitters.VOTERS.offer(this.id);
+		EngagementCounters.PENDING.increment(insight.id, voteState.equals(State.AGREE) ? Engagement.AGREE : Engagement.DISAGREE);
+		if (change) {
+			EngagementCounters.PENDING.increment(insight.id, Engagement.VOTE_CHANGE);
+		}
 		
 		// the user has seen this insight (remove it from shared ones)
 		this.readInsight(insight);
@@ -890,7 +902,9 @@ public class User extends Model implements Comparable<User> {
 	}
 
 	public void computeCategoryScores(Date computeDate, PeriodEnum period) {
-		for (Category category : Category.getAllCategories()) {
+		// the scores of the categories are updated : use categories managed by this session, not the reference data
+		List<Category> categories = Category.findAll();
+		for (Category category : categories) {
 			this.computeCategoryScore(category, computeDate, period);
 		}
 	}
@@ -1072,7 +1086,9 @@ public class User extends Model implements Comparable<User> {
 	 */
 	public void visitInsight(Insight insight, UserClientInfo userClientInfo) {
 		UserInsightVisit visit = new UserInsightVisit(new Date(), this, userClientInfo, insight);
-		visit.save();
+		VisitBuffer.add(visit);
+		HeavyHitters.READ_INSIGHTS.offer(insight.id);
+		EngagementCounters.PENDING.increment(insight.id, Engagement.VIEW);
 	}
 
 	/**
@@ -1080,7 +1096,7 @@ public class User extends Model implements Comparable<User> {
 	 */
 	public void visitInsightsList(UserClientInfo userClientInfo) {
 		UserListInsightsVisit visit = new UserListInsightsVisit(new Date(), this, userClientInfo);
-		visit.save();
+		VisitBuffer.add(visit);
 	}
 	
 	/**
@@ -1088,7 +1104,7 @@ public class User extends Model implements Comparable<User> {
 	 */
 	public void visitTopic(Tag topic, UserClientInfo userClientInfo) {
 		UserTopicVisit topicVisit = new UserTopicVisit(new Date(), this, userClientInfo, topic);
-		topicVisit.save();
+		VisitBuffer.add(topicVisit);
 		
 		// reset the activity for this user concerning this insight
 		TagActivity activity = TagActivity.find("byUserAndTag", this, topic).first();
@@ -1107,7 +1123,7 @@ public class User extends Model implements Comparable<User> {
 	 */
 	public void visitExpert(User expert, UserClientInfo userClientInfo) {
 		UserExpertVisit visit = new UserExpertVisit(new Date(), this, userClientInfo, expert);
-		visit.save();
+		VisitBuffer.add(visit);
 		
 		// reset the activity for this user concerning this insight
 		UserActivity activity = UserActivity.find("byUserAndFollowedUser", this, expert).first();
@@ -1125,7 +1141,7 @@ public class User extends Model implements Comparable<User> {
 	 */
 	public void visitExpertsList(UserClientInfo userClientInfo) {
 		UserListExpertsVisit visit = new UserListExpertsVisit(new Date(), this, userClientInfo);
-		visit.save();
+		VisitBuffer.add(visit);
 	}
 
 	/**
@@ -1137,7 +1153,7 @@ public class User extends Model implements Comparable<User> {
 	 */
 	public void visitInsightsSearch(String searchKeyWords, UserClientInfo userClientInfo) {
 		UserInsightSearchVisit visit = new UserInsightSearchVisit(new Date(), this, userClientInfo, searchKeyWords);
-		visit.save();
+		VisitBuffer.add(visit);
 	}
 	
 	/**
@@ -1244,10 +1260,29 @@ public class User extends Model implements Comparable<User> {
 		this.save();
 	}
 	
+	/**
+	 * users whose user name starts with or contains the query, the most followed first
+	 */
 	public static UserResult search(String userNameQuery, int from, int pageSize) {
-		Query q = Search.search("userName:" + userNameQuery + "*" , User.class);
-		q.page(from, pageSize);
-		List<User> usersResult = q.fetch();
+		List<Entry> suggestions = Autocomplete.users.suggest(userNameQuery, from + pageSize);
+		List<Long> ids = new ArrayList<Long>();
+		for (int i = from; i < suggestions.size(); i++) {
+			ids.add(suggestions.get(i).id);
+		}
+		List<User> usersResult = new ArrayList<User>();
+		if (!ids.isEmpty()) {
+			List<User> users = User.find("id in (:ids)").bind("ids", ids).fetch();
+			Map<Long, User> usersById = new HashMap<Long, User>();
+			for (User user : users) {
+				usersById.put(user.id, user);
+			}
+			// keep the order of the suggestions
+			for (Long id : ids) {
+				if (usersById.containsKey(id)) {
+					usersResult.add(usersById.get(id));
+				}
+			}
+		}
 		UserResult userResult = new UserResult(usersResult, usersResult.size());
 		
 		return userResult;
@@ -1260,6 +1295,19 @@ public class User extends Model implements Comparable<User> {
 		return "0";
 	}
 	
+	/** the cached info of this user (when connected) are no longer up to date */
+	@PostUpdate
+	@PostRemove
+	protected void invalidateCurrentUserInfo() {
+		CurrentUserInfo.invalidate(this.id);
+	}
+
+	/** the new user can be suggested in the autocompletion of user names */
+	@PostPersist
+	protected void addToAutocomplete() {
+		Autocomplete.users.add(this.id, this.userName);
+	}
+	
 //	public TokenPair getTokenPair() {
 //		return new TokenPair(this.oauthToken, this.oauthSecret);
 //	}
@@ -1360,52 +1408,42 @@ public class User extends Model implements Comparable<User> {
     	return results;
 	}
 	
+	/**
+	 * @return the users who have voted the most in the last days, from the rolling top of the votes
+	 */
 	public static List<UserCount> findBestVoters(int number) {
-		// A single SQL query could have been used for the following code
-		List<UserInsightDailyVote> stats = UserInsightDailyVote.find("forDate > ?", new DateTime().minusWeeks(1).toDate()).fetch();
-		// Compute the number of vote per user
-		Map<User, Long> userCountMap = new HashMap<User, Long>();
-		for(UserInsightDailyVote stat : stats ) {
-			Long count = new Long(0);
-			if(userCountMap.containsKey(stat.user)) {
-				count = userCountMap.get(stat.user);
-			}
-			userCountMap.put(stat.user, count + stat.count);
-		}
-		// Create an ordered users and count
-		List<UserCount> userCounts = new ArrayList<UserCount>();
-		for ( Map.Entry<User, Long> entry : userCountMap.entrySet() ) {
-			userCounts.add( new UserCount(entry.getKey(), entry.getValue()) );
-		}
-		// sort by count
-		Collections.sort( userCounts );
-		// reverse order
-		Collections.reverse( userCounts );
-		return userCounts.subList(0, Math.min(userCounts.size(), number));
+		return findUserCounts(HeavyHitters.VOTERS.top(number));
 	}
 	
+	/**
+	 * @return the users who have created the most insights in the last days, from the rolling top of the creations
+	 */
 	public static List<UserCount> findBestCreators(int number) {
-		// A single SQL query could have been used for the following code
-		List<UserInsightDailyCreation> stats2 = UserInsightDailyCreation.find("forDate > ?", new DateTime().minusWeeks(1).toDate()).fetch();
-		// Compute the number of vote per user
-		Map<User, Long> userCountMap2 = new HashMap<User, Long>();
-		for(UserInsightDailyCreation stat : stats2 ) {
-			Long count = new Long(0);
-			if(userCountMap2.containsKey(stat.user)) {
-				count = userCountMap2.get(stat.user);
+		return findUserCounts(HeavyHitters.CREATORS.top(number));
+	}
+	
+	private static List<UserCount> findUserCounts(List<Counter> top) {
+		List<UserCount> userCounts = new ArrayList<UserCount>(top.size());
+		if (top.isEmpty()) {
+			return userCounts;
+		}
+		List<Long> ids = new ArrayList<Long>(top.size());
+		for (Counter counter : top) {
+			ids.add(counter.id);
+		}
+		Map<Long, User> usersById = new HashMap<Long, User>();
+		List<User> users = User.find("id in (:ids)").bind("ids", ids).fetch();
+		for (User user : users) {
+			usersById.put(user.id, user);
+		}
+		// in the order of the top
+		for (Counter counter : top) {
+			User user = usersById.get(counter.id);
+			if (user != null) {
+				userCounts.add(new UserCount(user, counter.count));
 			}
-			userCountMap2.put(stat.user, count + stat.count);
-		}
-		// Create an ordered users and count
-		List<UserCount> userCounts2 = new ArrayList<UserCount>();
-		for ( Map.Entry<User, Long> entry : userCountMap2.entrySet() ) {
-			userCounts2.add( new UserCount(entry.getKey(), entry.getValue()) );
-		}
-		// sort by count
-		Collections.sort( userCounts2 );
-		// reverse order
-		Collections.reverse( userCounts2 );
-		return userCounts2.subList(0, Math.min(userCounts2.size(), number));
+		}
+		return userCounts;
 	}
 	
 	/**
@@ -1,10 +1,15 @@
 package models;
 
+import helpers.cache.SidebarSnapshot;
+
 import java.util.Date;
 
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.ManyToOne;
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
 
 import play.db.jpa.Model;
 
@@ -85,4 +90,12 @@ public class UserActivity extends Model {
 		this.notEmpty = true;
 		this.updated = new Date();
 	}
+
+	/** the sidebar of the user displays this activity */
+	@PostPersist
+	@PostUpdate
+	@PostRemove
+	protected void invalidateSidebar() {
+		SidebarSnapshot.invalidate(user.id);
+	}
 }
@@ -1,11 +1,16 @@
 package models;
 
+import helpers.cache.PageCache;
+
 import java.util.Date;
 import java.util.List;
 
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.ManyToOne;
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
 import javax.persistence.Table;
 import javax.persistence.UniqueConstraint;
 
@@ -100,4 +105,14 @@ public class Vote extends Model {
 				.bind("userId", userId).bind("insightUniqueId", insightUniqueId).fetch();
 		return votes;
 	}
+
+	/**
+	 * the votes are displayed on the cached page of the insight
+	 */
+	@PostPersist
+	@PostUpdate
+	@PostRemove
+	protected void invalidateInsightPage() {
+		PageCache.invalidateInsight(insight.uniqueId);
+	}
 }
@@ -1,7 +1,14 @@
 package models.analytics;
 
+import helpers.analytics.DailyRollup;
+import helpers.analytics.DailyRollup.DailyCount;
+import helpers.analytics.DailyRollup.DayRange;
+
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.persistence.Entity;
 import javax.persistence.ManyToOne;
@@ -9,9 +16,7 @@ import javax.persistence.MappedSuperclass;
 import javax.persistence.Transient;
 
 import org.joda.time.DateMidnight;
-import org.joda.time.DateTime;
 
-import models.Comment;
 import models.Insight;
 import models.User;
 import models.Vote;
@@ -49,20 +54,32 @@ public class DailyTotalComment extends Model {
 	}
 	
 	
-    public static void compute(DateTime startOfDayForCalculation) {
-    	if (DailyTotalComment.findIfAnalyticExistsForDate(startOfDayForCalculation.toDate()) == true) {
-    		return; // stop
-    	}
-    	DateTime endOfDayForCalculation = startOfDayForCalculation.plusDays(1).minusSeconds(1);
-		
-    	long dailyCount = Comment.count("creationDate between ? and  ?", startOfDayForCalculation.toDate(), endOfDayForCalculation.toDate());
-		
-    	DailyTotalComment analytic = new DailyTotalComment(startOfDayForCalculation.toDate(), dailyCount);
-		analytic.save();
+    /**
+     * Computes the total of each day without a total up to lastDay, with a single query per range of missing days
+     */
+    public static void compute(DateMidnight lastDay) {
+		for (DayRange missing : DailyRollup.missingDays(DailyTotalComment.class, lastDay)) {
+			compute(missing.first, missing.last);
+		}
+    }
+
+    private static void compute(DateMidnight firstDay, DateMidnight lastDay) {
+		List<DailyCount> counts = DailyRollup.countByDay("select year(c.creationDate), month(c.creationDate), day(c.creationDate), count(c.id) " +
+				"from Comment c " +
+				"where c.creationDate >= :from and c.creationDate < :to " +
+				"group by year(c.creationDate), month(c.creationDate), day(c.creationDate)", firstDay, lastDay);
+		Map<Date, Long> countsByDay = new HashMap<Date, Long>();
+		for (DailyCount count : counts) {
+			countsByDay.put(count.day, count.count);
+		}
 		
-		// recursive call to create previous records if they don't exist yet
-		startOfDayForCalculation = startOfDayForCalculation.minusDays(1);
-		compute(startOfDayForCalculation);
+		// a row for every day, even without any comment
+		List<DailyTotalComment> analytics = new ArrayList<DailyTotalComment>();
+		for (DateMidnight day = firstDay; !day.isAfter(lastDay); day = day.plusDays(1)) {
+			Long dailyCount = countsByDay.get(day.toDate());
+			analytics.add(new DailyTotalComment(day.toDate(), dailyCount == null ? 0 : dailyCount));
+		}
+		DailyRollup.save(analytics);
     }
 	
 }
@@ -1,7 +1,14 @@
 package models.analytics;
 
+import helpers.analytics.DailyRollup;
+import helpers.analytics.DailyRollup.DailyCount;
+import helpers.analytics.DailyRollup.DayRange;
+
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.persistence.Entity;
 import javax.persistence.ManyToOne;
@@ -9,11 +16,9 @@ import javax.persistence.MappedSuperclass;
 import javax.persistence.Transient;
 
 import org.joda.time.DateMidnight;
-import org.joda.time.DateTime;
 
 import models.Insight;
 import models.User;
-import models.Vote;
 import play.db.jpa.Model;
 
 /**
@@ -49,20 +54,32 @@ public class DailyTotalVote extends Model {
 	}
 	
 	
-    public static void compute(DateTime startOfDayForCalculation) {
-    	if (DailyTotalVote.findIfAnalyticExistsForDate(startOfDayForCalculation.toDate()) == true) {
-    		return; // stop
-    	}
-    	DateTime endOfDayForCalculation = startOfDayForCalculation.plusDays(1).minusSeconds(1);
-		
-    	long dailyCount = Vote.count("creationDate between ? and  ?", startOfDayForCalculation.toDate(), endOfDayForCalculation.toDate());
-		
-    	DailyTotalVote analytic = new DailyTotalVote(startOfDayForCalculation.toDate(), dailyCount);
-		analytic.save();
+    /**
+     * Computes the total of each day without a total up to lastDay, with a single query per range of missing days
+     */
+    public static void compute(DateMidnight lastDay) {
+		for (DayRange missing : DailyRollup.missingDays(DailyTotalVote.class, lastDay)) {
+			compute(missing.first, missing.last);
+		}
+    }
+
+    private static void compute(DateMidnight firstDay, DateMidnight lastDay) {
+		List<DailyCount> counts = DailyRollup.countByDay("select year(v.creationDate), month(v.creationDate), day(v.creationDate), count(v.id) " +
+				"from Vote v " +
+				"where v.creationDate >= :from and v.creationDate < :to " +
+				"group by year(v.creationDate), month(v.creationDate), day(v.creationDate)", firstDay, lastDay);
+		Map<Date, Long> countsByDay = new HashMap<Date, Long>();
+		for (DailyCount count : counts) {
+			countsByDay.put(count.day, count.count);
+		}
 		
-		// recursive call to create previous records if they don't exist yet
-		startOfDayForCalculation = startOfDayForCalculation.minusDays(1);
-		compute(startOfDayForCalculation);
+		// a row for every day, even without any vote
+		List<DailyTotalVote> analytics = new ArrayList<DailyTotalVote>();
+		for (DateMidnight day = firstDay; !day.isAfter(lastDay); day = day.plusDays(1)) {
+			Long dailyCount = countsByDay.get(day.toDate());
+			analytics.add(new DailyTotalVote(day.toDate(), dailyCount == null ? 0 : dailyCount));
+		}
+		DailyRollup.save(analytics);
     }
 	
 }
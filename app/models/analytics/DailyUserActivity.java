@@ -0,0 +1,100 @@
+package models.analytics;
+
+import helpers.analytics.DailyRollup;
+import helpers.analytics.DailyRollup.DailyCount;
+import helpers.analytics.DailyRollup.DayRange;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.Entity;
+
+import org.joda.time.DateMidnight;
+
+import play.db.jpa.JPA;
+import play.db.jpa.Model;
+
+/**
+ * The users of a day: new accounts, total accounts, and the users active this day
+ * (who have visited the insights list), computed by the AnalyticsJob.
+ */
+@Entity
+public class DailyUserActivity extends Model {
+
+	/** the date for which this analytics has been created */
+	public Date forDate;
+
+	/** accounts created this day */
+	public long newUsers;
+
+	/** accounts created up to the end of this day */
+	public long totalUsers;
+
+	/** distinct users who have visited the insights list this day */
+	public long activeUsers;
+
+	/** active users whose account was not created this day */
+	public long returningUsers;
+
+	public DailyUserActivity(Date forDate, long newUsers, long totalUsers, long activeUsers, long returningUsers) {
+		super();
+		this.forDate = forDate;
+		this.newUsers = newUsers;
+		this.totalUsers = totalUsers;
+		this.activeUsers = activeUsers;
+		this.returningUsers = returningUsers;
+	}
+
+	/**
+	 * Computes the activity of each day without one up to lastDay, with one query per metric and range of missing days
+	 */
+	public static void compute(DateMidnight lastDay) {
+		for (DayRange missing : DailyRollup.missingDays(DailyUserActivity.class, lastDay)) {
+			compute(missing.first, missing.last);
+		}
+	}
+
+	private static void compute(DateMidnight firstDay, DateMidnight lastDay) {
+		Map<Date, Long> newUsers = byDay(DailyRollup.countByDay("select year(u.crdate), month(u.crdate), day(u.crdate), count(u.id) " +
+				"from User u " +
+				"where u.crdate >= :from and u.crdate < :to " +
+				"group by year(u.crdate), month(u.crdate), day(u.crdate)", firstDay, lastDay));
+		Map<Date, Long> activeUsers = byDay(DailyRollup.countByDay("select year(v.creationDate), month(v.creationDate), day(v.creationDate), count(distinct v.user.id) " +
+				"from UserListInsightsVisit v " +
+				"where v.creationDate >= :from and v.creationDate < :to " +
+				"group by year(v.creationDate), month(v.creationDate), day(v.creationDate)", firstDay, lastDay));
+		Map<Date, Long> activeNewUsers = byDay(DailyRollup.countByDay("select year(v.creationDate), month(v.creationDate), day(v.creationDate), count(distinct v.user.id) " +
+				"from UserListInsightsVisit v " +
+				"where v.creationDate >= :from and v.creationDate < :to " +
+				"and year(v.user.crdate) = year(v.creationDate) and month(v.user.crdate) = month(v.creationDate) and day(v.user.crdate) = day(v.creationDate) " +
+				"group by year(v.creationDate), month(v.creationDate), day(v.creationDate)", firstDay, lastDay));
+
+		long totalUsers = (Long) JPA.em().createQuery("select count(u.id) from User u where u.crdate < :from")
+				.setParameter("from", firstDay.toDate())
+				.getSingleResult();
+		List<DailyUserActivity> analytics = new ArrayList<DailyUserActivity>();
+		for (DateMidnight day = firstDay; !day.isAfter(lastDay); day = day.plusDays(1)) {
+			Date date = day.toDate();
+			totalUsers += get(newUsers, date);
+			analytics.add(new DailyUserActivity(date, get(newUsers, date), totalUsers, get(activeUsers, date),
+					get(activeUsers, date) - get(activeNewUsers, date)));
+		}
+		DailyRollup.save(analytics);
+	}
+
+	private static Map<Date, Long> byDay(List<DailyCount> counts) {
+		Map<Date, Long> countsByDay = new HashMap<Date, Long>();
+		for (DailyCount count : counts) {
+			countsByDay.put(count.day, count.count);
+		}
+		return countsByDay;
+	}
+
+	private static long get(Map<Date, Long> countsByDay, Date day) {
+		Long count = countsByDay.get(day);
+		return count == null ? 0 : count;
+	}
+}
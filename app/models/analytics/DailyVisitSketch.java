@@ -0,0 +1,165 @@
+package models.analytics;
+
+import helpers.analytics.DailyRollup;
+import helpers.analytics.DailySerie;
+import helpers.analytics.HyperLogLog;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.Entity;
+import javax.persistence.Lob;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.joda.time.DateMidnight;
+import org.joda.time.Days;
+
+import play.db.jpa.JPA;
+import play.db.jpa.Model;
+
+/**
+ * The users who have made a type of visit a day, as a HyperLogLog sketch: sketches of several days
+ * are merged to count the distinct users of a week or a month, with about 1% of error.
+ * There is a sketch of all the visits of each type, and one per visited insight, topic or expert.
+ */
+@Entity
+public class DailyVisitSketch extends Model {
+
+	/** visit types and the field of the visited object, null if none */
+	private static final String[][] VISIT_TYPES = {
+		{ UserListInsightsVisit.class.getSimpleName(), null },
+		{ UserInsightVisit.class.getSimpleName(), "insight" },
+		{ UserTopicVisit.class.getSimpleName(), "topic" },
+		{ UserExpertVisit.class.getSimpleName(), "expert" } };
+
+	/** the date for which this analytics has been created */
+	public Date forDate;
+
+	/** simple name of the visit class, UserInsightVisit for example */
+	public String visitType;
+
+	/** id of the visited insight, topic or expert, null for the sketch of all the visits of this type */
+	public Long targetId;
+
+	/** serialized HyperLogLog */
+	@Lob
+	public byte[] sketch;
+
+	public DailyVisitSketch(Date forDate, String visitType, Long targetId, HyperLogLog sketch) {
+		super();
+		this.forDate = forDate;
+		this.visitType = visitType;
+		this.targetId = targetId;
+		this.sketch = sketch.toBytes();
+	}
+
+	/**
+	 * Computes the sketches of each day from the last computed one to lastDay.
+	 * The visits are read day by day and streamed, so that the memory used doesn't depend on the traffic
+	 * nor on the number of days to compute.
+	 */
+	public static void compute(DateMidnight lastDay) {
+		DateMidnight firstDay = DailyRollup.firstMissingDay(DailyVisitSketch.class, lastDay);
+		if (firstDay == null) {
+			return;
+		}
+		for (DateMidnight day = firstDay; !day.isAfter(lastDay); day = day.plusDays(1)) {
+			for (String[] visitType : VISIT_TYPES) {
+				compute(visitType[0], visitType[1], day);
+			}
+			// nothing read for a day is kept for the next ones
+			JPA.em().clear();
+		}
+	}
+
+	private static void compute(String visitType, String targetField, DateMidnight day) {
+		Session session = (Session) JPA.em().getDelegate();
+		// the MySQL driver only streams the rows with this fetch size, otherwise it reads them all before the first one
+		boolean mysql = ((SessionFactoryImplementor) session.getSessionFactory()).getDialect() instanceof MySQLDialect;
+		ScrollableResults visits = session.createQuery("select v.user.id" + (targetField == null ? "" : ", v." + targetField + ".id") + " " +
+				"from " + visitType + " v " +
+				"where v.creationDate >= :from and v.creationDate < :to")
+				.setParameter("from", day.toDate())
+				.setParameter("to", day.plusDays(1).toDate())
+				.setFetchSize(mysql ? Integer.MIN_VALUE : 1000)
+				.setReadOnly(true)
+				.scroll(ScrollMode.FORWARD_ONLY);
+		// target id (null for all the visits) -> users
+		Map<Long, HyperLogLog> users = new LinkedHashMap<Long, HyperLogLog>();
+		try {
+			while (visits.next()) {
+				Long userId = (Long) visits.get(0);
+				if (userId == null) {
+					continue;
+				}
+				offer(users, null, userId);
+				if (targetField != null && visits.get(1) != null) {
+					offer(users, (Long) visits.get(1), userId);
+				}
+			}
+		} finally {
+			visits.close();
+		}
+		List<DailyVisitSketch> sketches = new ArrayList<DailyVisitSketch>(users.size());
+		for (Map.Entry<Long, HyperLogLog> targetUsers : users.entrySet()) {
+			sketches.add(new DailyVisitSketch(day.toDate(), visitType, targetUsers.getKey(), targetUsers.getValue()));
+		}
+		DailyRollup.save(sketches);
+	}
+
+	private static void offer(Map<Long, HyperLogLog> users, Long targetId, long userId) {
+		HyperLogLog sketch = users.get(targetId);
+		if (sketch == null) {
+			sketch = new HyperLogLog();
+			users.put(targetId, sketch);
+		}
+		sketch.offer(userId);
+	}
+
+	/**
+	 * @param targetId : the visited insight, topic or expert, null for all
+	 * @return the number of distinct users who have made this type of visit between these days (included)
+	 */
+	public static long distinctUsers(Class<? extends UserVisit> visitType, Long targetId, Date from, Date to) {
+		List<DailyVisitSketch> sketches = find("visitType = ? and targetId " + (targetId == null ? "is null" : "= " + targetId) + " and forDate >= ? and forDate <= ?",
+				visitType.getSimpleName(), from, to).fetch();
+		HyperLogLog users = new HyperLogLog();
+		for (DailyVisitSketch sketch : sketches) {
+			users.merge(HyperLogLog.fromBytes(sketch.sketch));
+		}
+		return users.cardinality();
+	}
+
+	/**
+	 * @return for each day from firstDay to lastDay, the number of distinct users who have made this type of visit in the
+	 * windowDays days ending this day (7 for the weekly active users)
+	 */
+	public static DailySerie distinctUsersSeries(Class<? extends UserVisit> visitType, int windowDays, DateMidnight firstDay, DateMidnight lastDay) {
+		List<DailyVisitSketch> sketches = find("visitType = ? and targetId is null and forDate >= ? and forDate <= ? order by forDate",
+				visitType.getSimpleName(), firstDay.minusDays(windowDays - 1).toDate(), lastDay.toDate()).fetch();
+		Map<Long, HyperLogLog> sketchesByDay = new HashMap<Long, HyperLogLog>();
+		for (DailyVisitSketch sketch : sketches) {
+			sketchesByDay.put(sketch.forDate.getTime(), HyperLogLog.fromBytes(sketch.sketch));
+		}
+		DailySerie series = new DailySerie(Days.daysBetween(firstDay, lastDay).getDays() + 1);
+		for (DateMidnight day = firstDay; !day.isAfter(lastDay); day = day.plusDays(1)) {
+			HyperLogLog users = new HyperLogLog();
+			for (int i = 0; i < windowDays; i++) {
+				HyperLogLog dayUsers = sketchesByDay.get(day.minusDays(i).getMillis());
+				if (dayUsers != null) {
+					users.merge(dayUsers);
+				}
+			}
+			series.add(day.toDate(), users.cardinality());
+		}
+		return series;
+	}
+}
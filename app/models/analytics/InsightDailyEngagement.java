@@ -0,0 +1,90 @@
+package models.analytics;
+
+import helpers.analytics.EngagementCounters.Engagement;
+
+import java.util.Date;
+import java.util.List;
+
+import javax.persistence.Entity;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+import models.Insight;
+import play.db.jpa.JPA;
+import play.db.jpa.Model;
+
+/**
+ * Views, votes and comments of an insight during a day, for its creator and its sponsor.
+ * The counts are added as they happen by the EngagementWriterJob, not computed from the visits and votes.
+ */
+@Entity
+@Table(
+		uniqueConstraints=@UniqueConstraint(name="InsightDailyEngagement_insight_date", columnNames={"insight_id", "forDate"})
+	)
+public class InsightDailyEngagement extends Model {
+
+	/** the date for which this analytics has been created */
+	public Date forDate;
+
+	@ManyToOne
+	public Insight insight;
+
+	public long views;
+
+	public long agreeCount;
+
+	public long disagreeCount;
+
+	/** votes changed from agree to disagree or the opposite (also counted in agreeCount or disagreeCount) */
+	public long voteChanges;
+
+	public long commentCount;
+
+	public InsightDailyEngagement(Date forDate, Insight insight) {
+		super();
+		this.forDate = forDate;
+		this.insight = insight;
+	}
+
+	/**
+	 * Adds these counts to the engagement of this insight this day, creating it if needed.
+	 * One statement, relying on the unique key (insight_id, forDate): two servers adding to the same day can't create two rows.
+	 * @param counts : count of each event, indexed by Engagement.ordinal()
+	 */
+	public static void add(long insightId, Date day, long[] counts) {
+		long views = counts[Engagement.VIEW.ordinal()];
+		long agree = counts[Engagement.AGREE.ordinal()];
+		long disagree = counts[Engagement.DISAGREE.ordinal()];
+		long changes = counts[Engagement.VOTE_CHANGE.ordinal()];
+		long comments = counts[Engagement.COMMENT.ordinal()];
+		JPA.em().createNativeQuery("insert into InsightDailyEngagement " +
+				"(forDate, insight_id, views, agreeCount, disagreeCount, voteChanges, commentCount) values (?, ?, ?, ?, ?, ?, ?) " +
+				"on duplicate key update views = views + ?, agreeCount = agreeCount + ?, disagreeCount = disagreeCount + ?, " +
+				"voteChanges = voteChanges + ?, commentCount = commentCount + ?")
+				.setParameter(1, day)
+				.setParameter(2, insightId)
+				.setParameter(3, views)
+				.setParameter(4, agree)
+				.setParameter(5, disagree)
+				.setParameter(6, changes)
+				.setParameter(7, comments)
+				.setParameter(8, views)
+				.setParameter(9, agree)
+				.setParameter(10, disagree)
+				.setParameter(11, changes)
+				.setParameter(12, comments)
+				.executeUpdate();
+	}
+
+	/**
+	 * @return the engagement of this insight by day, the most recent day first:
+	 * forDate, views, agreeCount, disagreeCount, voteChanges, commentCount
+	 */
+	public static List<Object[]> findByInsight(Insight insight, int from, int number) {
+		return find("select e.forDate, e.views, e.agreeCount, e.disagreeCount, e.voteChanges, e.commentCount " +
+				"from InsightDailyEngagement e " +
+				"where e.insight = ? " +
+				"order by e.forDate desc", insight).from(from).fetch(number);
+	}
+}
@@ -15,6 +15,8 @@ import org.apache.commons.codec.binary.Base64;
 
 import play.Play;
 import play.libs.IO;
+import play.mvc.Http.Response;
+import play.mvc.Router.ActionDefinition;
 import play.templates.FastTags;
 import play.templates.JavaExtensions;
 import play.templates.GroovyTemplate.ExecutableTemplate;
@@ -48,6 +50,19 @@ public class Tags extends FastTags {
         }
     }
 	
+    /**
+     * Same as #{form} (always a POST) but without the authenticity token, that #{form} puts in the session of the visitor
+     * and in the page : for the forms of the pages served to all anonymous visitors from the page cache (login, sign up, tags),
+     * whose actions don't check the authenticity token.
+     */
+    public static void _publicForm(Map<?, ?> args, Closure body, PrintWriter out, ExecutableTemplate template, int fromLine) {
+    	ActionDefinition action = (ActionDefinition) args.get("arg");
+    	String enctype = args.containsKey("enctype") ? args.get("enctype").toString() : "application/x-www-form-urlencoded";
+    	out.print("<form action=\"" + action.url + "\" method=\"post\" accept-charset=\"" + Response.current().encoding + "\" enctype=\"" + enctype + "\" " + serialize(args, "enctype") + ">");
+    	out.println(JavaExtensions.toString(body));
+    	out.print("</form>");
+    }
+
     public static void _hasVotedFor(Map<?, ?> args, Closure body, PrintWriter out, ExecutableTemplate template, int fromLine) {
 		if (hasVotedFor((Insight)args.get("insight"), (String)args.get("insightId"))) {
 			out.print(JavaExtensions.toString(body));
@@ -69,7 +84,7 @@ public class Tags extends FastTags {
     		}
     	}
     	
-		Vote vote = Vote.findLastVoteByUserAndInsight(CurrentUser.getCurrentUser().id, insight.uniqueId);
+		Vote vote = Vote.findLastVoteByUserAndInsight(CurrentUser.getCurrentUserId(), insight.uniqueId);
 		if (vote != null) {
 			return true;
 		}
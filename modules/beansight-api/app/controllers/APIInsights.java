@@ -11,6 +11,7 @@ import org.joda.time.DateMidnight;
 
 import models.Category;
 import models.Comment;
+import models.FeaturedSponsor;
 import models.Filter;
 import models.Filter.FilterVote;
 import models.Insight;
@@ -20,6 +21,7 @@ import models.Tag;
 import models.User;
 import models.Vote;
 import models.Vote.State;
+import models.analytics.InsightDailyEngagement;
 import play.Logger;
 import play.data.binding.As;
 import play.data.validation.InFuture;
@@ -163,6 +165,24 @@ public class APIInsights extends APIController {
 		}
 	}
 	
+	public static class InsightEngagement {
+		public Long		date;
+		public Long		views;
+		public Long		agreeCount;
+		public Long		disagreeCount;
+		public Long		voteChanges;
+		public Long		commentCount;
+		
+		public InsightEngagement(Object[] engagement) {
+			date = ((Date) engagement[0]).getTime();
+			views = (Long) engagement[1];
+			agreeCount = (Long) engagement[2];
+			disagreeCount = (Long) engagement[3];
+			voteChanges = (Long) engagement[4];
+			commentCount = (Long) engagement[5];
+		}
+	}
+	
 	// TODO : what if the content evolves between two calls ?
 	// Maybe a better solution would be to give the uniqueId of the latest
 	// downloaded insight
@@ -443,4 +463,41 @@ public class APIInsights extends APIController {
 		renderAPI(apiResult);
 	}
 	
+	/**
+	 * Get the engagement of a given insight per day, the most recent day first<br/>
+	 * <b>Authentication required</b>: the creator or the sponsor of the insight<br/>
+	 * <b>response:</b> <code>[{date, views, agreeCount, disagreeCount, voteChanges, commentCount}, ...]</code>
+	 * 
+	 * @param id : unique ID of this insight
+	 * @param from : index of the first day to return, default = 0
+	 * @param number : number of days to return, default = 30
+	 */
+	public static void engagement(@Required String id, @Min(0) Integer from, @Min(1) @Max(100) Integer number) {
+		if (validation.hasErrors()) {
+			badRequest();
+		}
+		checkAccessToken();
+		if (from == null) {
+			from = 0;
+		}
+		if (number == null) {
+			number = 30;
+		}
+		
+		Insight insight = Insight.findByUniqueId(id);
+		notFoundIfNull(insight);
+		
+		User currentUser = getUserFromAccessToken();
+		if (!currentUser.isAdmin && !currentUser.equals(insight.creator) && !currentUser.equals(insight.sponsor)
+				&& FeaturedSponsor.count("sponsor = ? and ? member of insights", currentUser, insight) == 0) {
+			forbidden();
+		}
+		
+		List<InsightEngagement> engagements = new ArrayList<InsightEngagement>();
+		for (Object[] engagement : InsightDailyEngagement.findByInsight(insight, from, number)) {
+			engagements.add(new InsightEngagement(engagement));
+		}
+		renderAPI(engagements);
+	}
+	
 }
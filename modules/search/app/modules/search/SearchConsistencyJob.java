@@ -0,0 +1,30 @@
+package modules.search;
+
+import play.Logger;
+import play.Play;
+import play.classloading.ApplicationClasses.ApplicationClass;
+import play.jobs.Every;
+import play.jobs.Job;
+import play.modules.search.Indexed;
+import play.modules.search.Search;
+import play.modules.search.store.ConsistencyChecker;
+
+/**
+ * Counts the indexed objects and samples ids to detect the indexes drifting from the database,
+ * see the search metrics of each index.
+ */
+@Every("10mn")
+public class SearchConsistencyJob extends Job {
+
+    public void doJob() throws Exception {
+        ConsistencyChecker checker = new ConsistencyChecker(Search.getCurrentStore());
+        for (ApplicationClass applicationClass : Play.classes.getAnnotatedClasses(Indexed.class)) {
+            try {
+                checker.check(applicationClass.javaClass);
+            } catch (Exception e) {
+                Logger.error(e, "Could not check the search index of %s", applicationClass.javaClass.getName());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,37 @@
+package play.modules.search.benchmark;
+
+import java.util.Date;
+
+import play.db.jpa.Model;
+import play.modules.search.Field;
+import play.modules.search.Indexed;
+
+/**
+ * An object indexed like an insight of the application, without the database:
+ * relations are replaced by the values the index gets from them.
+ */
+@Indexed
+public class BenchmarkInsight extends Model {
+
+    @Field
+    public String content;
+
+    /** labels of the tags, separated by spaces */
+    @Field
+    public String tags;
+
+    @Field(tokenize = false)
+    public String userName;
+
+    @Field(tokenize = false)
+    public String lang;
+
+    @Field(tokenize = false)
+    public String category;
+
+    @Field(tokenize = false)
+    public Date endDate;
+
+    @Field(tokenize = false)
+    public boolean hidden;
+}
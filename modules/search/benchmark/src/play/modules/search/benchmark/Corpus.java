@@ -0,0 +1,97 @@
+package play.modules.search.benchmark;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Synthetic insights: 140 chars contents, tags and user names drawn from fixed vocabularies.
+ * <p/>
+ * Words are drawn with a Zipf like distribution, so that queries can target common, medium and rare words.
+ * The same seed always generates the same corpus.
+ */
+public class Corpus {
+
+    private static final String[] SYLLABLES = { "ba", "ke", "lo", "mi", "nu", "pa", "re", "si", "to", "vu", "za", "che", "dor", "fin",
+                    "gra", "hul", "jas", "kor", "lum", "mar", "nes", "pol", "qui", "ros", "sta", "tri", "ver", "wal" };
+
+    private static final String[] LANGS = { "en", "en", "en", "en", "en", "en", "en", "fr", "fr", "fr" };
+
+    private static final String[] CATEGORIES = { "1", "2", "3", "4", "5", "6", "7", "8", "9", "10" };
+
+    private final Random random;
+
+    /** words ordered from the most to the least frequent */
+    public final String[] words;
+
+    public final String[] tags;
+
+    public final String[] userNames;
+
+    public Corpus(long seed, int vocabularySize, int tagCount, int userCount) {
+        random = new Random(seed);
+        words = vocabulary(vocabularySize, 2, 3);
+        tags = vocabulary(tagCount, 2, 4);
+        userNames = vocabulary(userCount, 3, 5);
+    }
+
+    public List<BenchmarkInsight> generate(int size) {
+        List<BenchmarkInsight> insights = new ArrayList<BenchmarkInsight>(size);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < size; i++) {
+            BenchmarkInsight insight = new BenchmarkInsight();
+            insight.id = (long) i + 1;
+            insight.content = content(140);
+            StringBuilder insightTags = new StringBuilder();
+            for (int t = random.nextInt(3); t >= 0; t--) {
+                insightTags.append(tags[zipf(tags.length)]).append(' ');
+            }
+            insight.tags = insightTags.toString().trim();
+            insight.userName = userNames[zipf(userNames.length)];
+            insight.lang = LANGS[random.nextInt(LANGS.length)];
+            insight.category = CATEGORIES[random.nextInt(CATEGORIES.length)];
+            // from one year ago to one year from now
+            insight.endDate = new Date(now + (random.nextInt(730) - 365) * 24L * 3600 * 1000);
+            insight.hidden = random.nextInt(20) == 0;
+            insights.add(insight);
+        }
+        return insights;
+    }
+
+    private String content(int length) {
+        StringBuilder content = new StringBuilder(length + 16);
+        while (content.length() < length) {
+            content.append(words[zipf(words.length)]).append(' ');
+        }
+        return content.substring(0, length).trim();
+    }
+
+    /**
+     * @return a rank between 0 and size - 1, rank r being drawn about 1 / (r + 1) times as often as rank 0
+     */
+    private int zipf(int size) {
+        // inverse of the cumulative distribution of 1/x, continuous approximation
+        return (int) Math.min(size - 1, Math.floor(Math.pow(size + 1, random.nextDouble())) - 1);
+    }
+
+    private String[] vocabulary(int size, int minSyllables, int maxSyllables) {
+        String[] vocabulary = new String[size];
+        Set<String> used = new HashSet<String>();
+        for (int i = 0; i < size; i++) {
+            String word;
+            do {
+                StringBuilder builder = new StringBuilder();
+                int syllables = minSyllables + random.nextInt(maxSyllables - minSyllables + 1);
+                for (int s = 0; s < syllables; s++) {
+                    builder.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+                }
+                word = builder.toString();
+            } while (!used.add(word));
+            vocabulary[i] = word;
+        }
+        return vocabulary;
+    }
+}
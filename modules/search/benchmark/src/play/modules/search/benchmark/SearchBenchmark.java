@@ -0,0 +1,306 @@
+package play.modules.search.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.apache.commons.io.FileUtils;
+
+import play.Play;
+import play.modules.search.Query;
+import play.modules.search.Search;
+import play.modules.search.store.ConvertionUtils;
+
+/**
+ * Measures the search path on a synthetic corpus: documents conversion, indexing (synchronous and queued),
+ * search latency by query shape, and the cost of deep pages.
+ * <p/>
+ * The measures are run several times and the median of each result is compared with the baseline recorded for
+ * the same scale: the run fails when one of them is worse than the baseline by more than the tolerance.
+ * Run it with ant benchmark, options (system properties):
+ * <ul>
+ * <li>benchmark.scale: number of insights, 10000 by default (100000 and 1000000 for the larger baselines)</li>
+ * <li>benchmark.runs: number of runs of the measures, 3 by default</li>
+ * <li>benchmark.record: true to record the results as the new baseline of this scale</li>
+ * <li>benchmark.tolerance: allowed regression, 0.2 (20%) by default</li>
+ * <li>benchmark.baselines: folder of the baselines, benchmark/baselines by default</li>
+ * </ul>
+ * Query.fetch() is not measured, it needs a database: it runs the search measured here through fetchIds()
+ * and then loads the page of objects with a single query.
+ */
+public class SearchBenchmark {
+
+    private static final String INDEX = BenchmarkInsight.class.getName();
+
+    /** synchronous indexing flushes the index after each document, only this many documents are indexed that way */
+    private static final int SYNC_DOCUMENTS = 2000;
+
+    private static final int WARMUP = 50;
+
+    private static final int ITERATIONS = 500;
+
+    /** result name -> value of each run, throughputs end with PerSecond (higher is better), the others are latencies */
+    private final Map<String, List<Double>> results = new LinkedHashMap<String, List<Double>>();
+
+    private final File dataPath;
+
+    private final List<BenchmarkInsight> insights;
+
+    private final Corpus corpus;
+
+    public SearchBenchmark(int scale, File dataPath) {
+        this.dataPath = dataPath;
+        this.corpus = new Corpus(42, 5000, 500, Math.max(100, scale / 20));
+        this.insights = corpus.generate(scale);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int scale = Integer.getInteger("benchmark.scale", 10000);
+        int runs = Integer.getInteger("benchmark.runs", 3);
+        File baselines = new File(System.getProperty("benchmark.baselines", "benchmark/baselines"));
+        File baseline = new File(baselines, "scale-" + scale + ".properties");
+        File dataPath = new File(System.getProperty("java.io.tmpdir"), "search-benchmark-" + System.currentTimeMillis());
+
+        SearchBenchmark benchmark = new SearchBenchmark(scale, dataPath);
+        try {
+            for (int run = 1; run <= runs; run++) {
+                System.out.println("Run " + run + "/" + runs);
+                benchmark.run();
+                // each run indexes into an empty folder
+                Search.shutdown();
+                FileUtils.deleteDirectory(dataPath);
+            }
+        } finally {
+            Search.shutdown();
+            FileUtils.deleteDirectory(dataPath);
+        }
+
+        if (Boolean.getBoolean("benchmark.record")) {
+            benchmark.record(baseline);
+            System.out.println("Baseline recorded in " + baseline);
+        } else if (baseline.exists()) {
+            double tolerance = Double.parseDouble(System.getProperty("benchmark.tolerance", "0.2"));
+            if (!benchmark.compare(baseline, tolerance)) {
+                System.exit(1);
+            }
+        } else {
+            System.out.println("No baseline for this scale on this machine, record one with -Dbenchmark.record=true");
+        }
+    }
+
+    public void run() throws Exception {
+        System.out.println("Search benchmark, " + insights.size() + " insights");
+        toDocument();
+        indexSync();
+        indexQueued();
+
+        // searches on the index built by the queue, the result cache is disabled to measure the searches themselves
+        start(new Properties());
+        String[] words = corpus.words;
+        search("term-common", "content:" + words[0], null);
+        search("term-medium", "content:" + words[100], null);
+        search("term-rare", "content:" + words[words.length - 1], null);
+        search("and", "+content:" + words[1] + " +content:" + words[20], null);
+        search("or", "content:" + words[1] + " content:" + words[20], null);
+        search("phrase", "content:\"" + words[0] + " " + words[1] + "\"", null);
+        search("prefix", "content:" + words[10].substring(0, 3) + "*", null);
+        search("tag", "tags:" + corpus.tags[0], null);
+        search("filtered", "content:" + words[1], "filtered");
+        search("sorted", "content:" + words[1], "sorted");
+        for (int offset : new int[] { 0, 100, 1000, 10000 }) {
+            page(offset);
+        }
+    }
+
+    private void toDocument() throws Exception {
+        // the first round warms up
+        long elapsed = 0;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (BenchmarkInsight insight : insights) {
+                ConvertionUtils.toDocument(insight);
+            }
+            elapsed = round == 0 ? 0 : elapsed + System.nanoTime() - start;
+        }
+        throughput("toDocument", insights.size() * 2, elapsed);
+    }
+
+    private void indexSync() throws Exception {
+        start(new Properties());
+        int count = Math.min(SYNC_DOCUMENTS, insights.size());
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            Search.index(insights.get(i));
+        }
+        throughput("index.sync", count, System.nanoTime() - start);
+        Search.getCurrentStore().delete(INDEX);
+    }
+
+    private void indexQueued() throws Exception {
+        Properties configuration = new Properties();
+        configuration.setProperty("play.search.refreshInterval", "1s");
+        start(configuration);
+        long start = System.nanoTime();
+        for (BenchmarkInsight insight : insights) {
+            Search.index(insight);
+        }
+        // stopping the store writes what is left in the queue
+        Search.shutdown();
+        throughput("index.queued", insights.size(), System.nanoTime() - start);
+    }
+
+    private void search(String name, final String query, final String variant) throws Exception {
+        long[] nanos = time(new Operation() {
+            public void run() {
+                Query q = Search.search(query, BenchmarkInsight.class).page(0, 10);
+                if ("filtered".equals(variant)) {
+                    q.filter("lang", "en").filter("hidden", "false");
+                } else if ("sorted".equals(variant)) {
+                    q.orderBy("userName");
+                }
+                q.fetchIds();
+                q.count();
+            }
+        });
+        latency("search." + name, nanos);
+    }
+
+    private void page(final int offset) throws Exception {
+        final String query = "content:" + corpus.words[0];
+        if (Search.search(query, BenchmarkInsight.class).count() <= offset) {
+            return;
+        }
+        long[] nanos = time(new Operation() {
+            public void run() {
+                Query q = Search.search(query, BenchmarkInsight.class).page(offset, 10);
+                q.fetchIds();
+                q.count();
+            }
+        });
+        latency("page." + offset, nanos);
+    }
+
+    /**
+     * (Re)starts the search module on the benchmark folder, with these properties
+     */
+    private void start(Properties configuration) {
+        configuration.setProperty("play.search.path", dataPath.getAbsolutePath());
+        configuration.setProperty("play.search.resultCache.size", "0");
+        Play.configuration = configuration;
+        Search.init();
+    }
+
+    private interface Operation {
+        void run() throws Exception;
+    }
+
+    private static long[] time(Operation operation) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            operation.run();
+        }
+        long[] nanos = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            operation.run();
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return nanos;
+    }
+
+    private void throughput(String name, int operations, long nanos) {
+        double perSecond = operations * 1e9 / Math.max(nanos, 1);
+        result(name + ".docsPerSecond", perSecond);
+        System.out.println(String.format("%-24s %12.0f docs/s", name, perSecond));
+    }
+
+    private void latency(String name, long[] sortedNanos) {
+        double p50 = sortedNanos[sortedNanos.length / 2] / 1000.0;
+        double p99 = sortedNanos[sortedNanos.length * 99 / 100] / 1000.0;
+        result(name + ".p50Micros", p50);
+        result(name + ".p99Micros", p99);
+        System.out.println(String.format("%-24s %12.0f us p50 %12.0f us p99", name, p50, p99));
+    }
+
+    private void result(String name, double value) {
+        List<Double> values = results.get(name);
+        if (values == null) {
+            values = new ArrayList<Double>();
+            results.put(name, values);
+        }
+        values.add(value);
+    }
+
+    /**
+     * @return result name -> median of the values of the runs
+     */
+    private Map<String, Double> medians() {
+        Map<String, Double> medians = new LinkedHashMap<String, Double>();
+        for (Map.Entry<String, List<Double>> result : results.entrySet()) {
+            List<Double> values = new ArrayList<Double>(result.getValue());
+            Collections.sort(values);
+            medians.put(result.getKey(), values.get(values.size() / 2));
+        }
+        return medians;
+    }
+
+    private void record(File baseline) throws Exception {
+        baseline.getParentFile().mkdirs();
+        // sorted keys, for readable diffs of the baselines
+        Map<String, Double> sorted = new TreeMap<String, Double>(medians());
+        PrintWriter out = new PrintWriter(new FileWriter(baseline));
+        try {
+            out.println("# Search benchmark baseline, " + insights.size() + " insights, median of "
+                    + results.values().iterator().next().size() + " runs, " + new Date());
+            for (Map.Entry<String, Double> result : sorted.entrySet()) {
+                out.println(result.getKey() + "=" + String.format(Locale.US, "%.1f", result.getValue()));
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @return false if a result is worse than its baseline by more than the tolerance
+     */
+    private boolean compare(File baseline, double tolerance) throws Exception {
+        Properties properties = new Properties();
+        InputStream in = new FileInputStream(baseline);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        boolean ok = true;
+        for (Map.Entry<String, Double> result : medians().entrySet()) {
+            String expected = properties.getProperty(result.getKey());
+            if (expected == null) {
+                continue;
+            }
+            double base = Double.parseDouble(expected);
+            double value = result.getValue();
+            boolean higherIsBetter = result.getKey().endsWith("PerSecond");
+            boolean regression = higherIsBetter ? value < base * (1 - tolerance) : value > base * (1 + tolerance);
+            if (regression) {
+                System.out.println(String.format("REGRESSION %s: %.1f, baseline %.1f", result.getKey(), value, base));
+                ok = false;
+            }
+        }
+        if (ok) {
+            System.out.println("No regression compared to " + baseline);
+        }
+        return ok;
+    }
+}
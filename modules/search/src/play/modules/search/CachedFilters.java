@@ -0,0 +1,124 @@
+package play.modules.search;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.document.DateTools;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.CachingWrapperFilter;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.QueryWrapperFilter;
+import org.apache.lucene.search.RangeFilter;
+import org.apache.lucene.search.TermQuery;
+
+import play.Play;
+import play.modules.search.store.ConvertionUtils;
+
+/**
+ * Lucene filters used to restrict queries, shared between queries.
+ * <p/>
+ * Each filter caches the bitset of the documents it accepts for each index reader,
+ * so it is only computed again once the reader has been reopened.
+ * The most recently used filters are kept, up to play.search.filterCache.size (default 500).
+ */
+public class CachedFilters {
+
+    private static final Map<String, Filter> filters = new LinkedHashMap<String, Filter>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Filter> eldest) {
+            return size() > Integer.parseInt(Play.configuration.getProperty("play.search.filterCache.size", "500"));
+        }
+    };
+
+    /**
+     * @return a filter accepting the documents whose field is one of these values (untokenized)
+     */
+    public static Filter terms(String field, String... values) {
+        StringBuilder key = new StringBuilder("terms:").append(field);
+        BooleanQuery query = new BooleanQuery();
+        for (String value : values) {
+            key.append(':').append(value);
+            query.add(new TermQuery(new Term(field, value)), BooleanClause.Occur.SHOULD);
+        }
+        return cached(key.toString(), new QueryWrapperFilter(query));
+    }
+
+    /**
+     * @return a filter accepting the documents whose date field is between the day of from (included) and the day of to
+     * (excluded), null for no bound (but not both). The bounds are rounded down to the day (GMT, as the indexed dates),
+     * so that a filter relative to now is the same one for the whole day instead of a new one every minute.
+     */
+    public static Filter dateRange(String field, Date from, Date to) {
+        String lower = dayBound(from);
+        String upper = dayBound(to);
+        String key = "range:" + field + ":" + lower + ":" + upper;
+        return cached(key, new RangeFilter(field, lower, upper, lower != null, false));
+    }
+
+    /**
+     * @return the date rounded down to the day, as indexed, null if date is null
+     */
+    static String dayBound(Date date) {
+        return date == null ? null : ConvertionUtils.dateToString(DateTools.round(date, DateTools.Resolution.DAY));
+    }
+
+    /**
+     * @return a filter accepting the documents accepted by all the given filters
+     */
+    public static Filter and(List<Filter> filters) {
+        if (filters.size() == 1) {
+            return filters.get(0);
+        }
+        return new AndFilter(filters);
+    }
+
+    private static Filter cached(String key, Filter filter) {
+        synchronized (filters) {
+            Filter cached = filters.get(key);
+            if (cached == null) {
+                cached = new CachingWrapperFilter(filter);
+                filters.put(key, cached);
+            }
+            return cached;
+        }
+    }
+
+    public static void clear() {
+        synchronized (filters) {
+            filters.clear();
+        }
+    }
+
+    /**
+     * Intersection of filters
+     */
+    public static class AndFilter extends Filter {
+        private final List<Filter> filters;
+
+        public AndFilter(List<Filter> filters) {
+            this.filters = filters;
+        }
+
+        @Override
+        public BitSet bits(IndexReader reader) throws IOException {
+            BitSet result = null;
+            for (Filter filter : filters) {
+                BitSet bits = filter.bits(reader);
+                if (result == null) {
+                    // the bitsets of the cached filters are shared, work on a copy
+                    result = (BitSet) bits.clone();
+                } else {
+                    result.and(bits);
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -14,4 +14,10 @@ import java.lang.annotation.Target;
 @Target(ElementType.TYPE)
 public @interface Indexed {
 
+    /**
+     * JPQL condition on the objects kept in the index (the entity is aliased e), for example "e.hidden = false"
+     * when some objects are unindexed by the application. Empty when all the objects are indexed.
+     * Used to compare the index with its table.
+     */
+    String where() default "";
 }
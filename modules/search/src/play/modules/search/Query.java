@@ -1,19 +1,25 @@
 package play.modules.search;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.lucene.queryParser.ParseException;
-import org.apache.lucene.queryParser.QueryParser;
 import org.apache.lucene.search.BooleanQuery;
-import org.apache.lucene.search.Hits;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TopDocs;
 
 import play.Play;
 import play.db.jpa.JPA;
 import play.db.jpa.JPABase;
 import play.exceptions.UnexpectedException;
 import play.modules.search.store.ConvertionUtils;
+import play.modules.search.store.IndexMetrics;
 import play.modules.search.store.Store;
 
 /**
@@ -36,7 +42,13 @@ public class Query {
 
     private boolean reverse = false;
 
-    private Hits hits = null;
+    private List<Filter> filters = new ArrayList<Filter>();
+
+    /** describes the filters, for the key of the result cache */
+    private StringBuilder filtersKey = new StringBuilder();
+
+    /** the top documents of the last search, enough for the current page */
+    private QueryCache.Results hits = null;
 
     protected Query(String query, Class<JPABase> clazz, Store store) {
         this.query = query;
@@ -55,6 +67,28 @@ public class Query {
         return this;
     }
 
+    /**
+     * Only keep the results whose (untokenized) field is one of these values
+     */
+    public Query filter(String field, String... values) {
+        filters.add(CachedFilters.terms(field, values));
+        filtersKey.append(field).append(Arrays.toString(values));
+        hits = null;
+        return this;
+    }
+
+    /**
+     * Only keep the results whose date field is from the day of from to the day before to, null for no bound
+     */
+    public Query filterRange(String field, Date from, Date to) {
+        filters.add(CachedFilters.dateRange(field, from, to));
+        filtersKey.append(field).append('[')
+                        .append(CachedFilters.dayBound(from)).append(',')
+                        .append(CachedFilters.dayBound(to)).append(']');
+        hits = null;
+        return this;
+    }
+
     public Query reverse() {
         this.reverse = true;
         return this;
@@ -115,11 +149,13 @@ public class Query {
         }
     }
 
+    /**
+     * @return the total number of hits. Reuses the search made for the current page if it has already been executed,
+     * so call it after fetch() to search only once.
+     */
     public long count() throws SearchException {
         try {
-            org.apache.lucene.search.Query luceneQuery = new QueryParser("_docID", Search.getAnalyser()).parse(query);
-            hits = store.getIndexSearcher(clazz.getName()).search(luceneQuery, getSort());
-            return hits.length();
+            return search().totalHits;
         } catch (ParseException e) {
             throw new SearchException(e);
         } catch (Exception e) {
@@ -136,48 +172,18 @@ public class Query {
      */
     public List<QueryResult> executeQuery(boolean fetch) throws SearchException {
         try {
-            if (hits == null) {
-                org.apache.lucene.search.Query luceneQuery =
-                                new QueryParser("_docID", Search.getAnalyser()).parse(query);
-                BooleanQuery.setMaxClauseCount(Integer.parseInt(Play.configuration.getProperty(
-                                "play.search.maxClauseCount", "1024")));
-                hits = store.getIndexSearcher(clazz.getName()).search(luceneQuery, getSort());
-            }
+            QueryCache.Results hits = search();
             List<QueryResult> results = new ArrayList<QueryResult>();
-            if (hits == null)
-                return results;
-
-            int l = hits.length();
-            if (offset > l) {
-                return results;
+            int start = pageSize > 0 ? offset : 0;
+            int end = pageSize > 0 ? Math.min(offset + pageSize, hits.ids.length) : hits.ids.length;
+            for (int i = start; i < end; i++) {
+                QueryResult qresult = new QueryResult();
+                qresult.score = hits.scores[i];
+                qresult.id = hits.ids[i];
+                results.add(qresult);
             }
-            List<Long> ids = new ArrayList<Long>();
-            if (pageSize > 0) {
-                for (int i = offset; i < (offset + pageSize > l ? l : offset + pageSize); i++) {
-                    QueryResult qresult = new QueryResult();
-                    qresult.score = hits.score(i);
-                    qresult.id = hits.doc(i).get("_docID");
-                    if (fetch) {
-                        Object objectId = ConvertionUtils.getIdValueFromIndex(clazz, qresult.id);
-                        qresult.object = (JPABase)JPA.em().find(clazz, objectId);
-                        if (qresult.object == null)
-                            throw new SearchException("Please re-index");
-                    }
-                    results.add(qresult);
-                }
-            } else {
-                for (int i = 0; i < l; i++) {
-                    QueryResult qresult = new QueryResult();
-                    qresult.score = hits.score(i);
-                    qresult.id = hits.doc(i).get("_docID");
-                    if (fetch) {
-                        Object objectId = ConvertionUtils.getIdValueFromIndex(clazz, qresult.id);
-                        qresult.object = (JPABase)JPA.em().find(clazz, objectId);
-                        if (qresult.object == null)
-                            throw new SearchException("Please re-index");
-                    }
-                    results.add(qresult);
-                }
+            if (fetch) {
+                fetchObjects(results);
             }
             return results;
         } catch (ParseException e) {
@@ -187,6 +193,76 @@ public class Query {
         }
     }
 
+    /**
+     * Searches the top offset + pageSize documents (all of them if no page), the total count comes with them.
+     * The same search made recently on the same version of the index is not made again.
+     */
+    private QueryCache.Results search() throws Exception {
+        IndexSearcher searcher = store.getIndexSearcher(clazz.getName());
+        int size = pageSize > 0 ? offset + pageSize : searcher.maxDoc();
+        size = Math.max(size, 1);
+        // the last search is enough if it returned all the hits or at least the ones of this page
+        if (hits != null && (hits.ids.length >= size || hits.ids.length >= hits.totalHits)) {
+            return hits;
+        }
+        String key = clazz.getName() + "@" + store.generation(clazz.getName()) + "|" + query + "|" + filtersKey
+                        + "|" + Arrays.toString(order) + reverse + "|" + size;
+        IndexMetrics metrics = IndexMetrics.get(clazz.getName());
+        hits = QueryCache.getResults(key);
+        if (hits != null) {
+            metrics.cacheHit();
+            return hits;
+        }
+        long start = System.currentTimeMillis();
+        BooleanQuery.setMaxClauseCount(Integer.parseInt(Play.configuration.getProperty(
+                        "play.search.maxClauseCount", "1024")));
+        org.apache.lucene.search.Query luceneQuery = QueryCache.parse(query);
+        Filter filter = filters.isEmpty() ? null : CachedFilters.and(filters);
+        TopDocs topDocs;
+        if (order.length > 0) {
+            topDocs = searcher.search(luceneQuery, filter, size, getSort());
+        } else {
+            topDocs = searcher.search(luceneQuery, filter, size);
+        }
+        // read the ids now, the documents numbers are only valid for this searcher
+        String[] ids = new String[topDocs.scoreDocs.length];
+        float[] scores = new float[topDocs.scoreDocs.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = searcher.doc(topDocs.scoreDocs[i].doc).get("_docID");
+            scores[i] = topDocs.scoreDocs[i].score;
+        }
+        metrics.queried(System.currentTimeMillis() - start);
+        hits = new QueryCache.Results(topDocs.totalHits, ids, scores);
+        QueryCache.putResults(key, hits);
+        return hits;
+    }
+
+    /**
+     * Loads the objects of the results with a single query, keeping the order of the results
+     */
+    private void fetchObjects(List<QueryResult> results) {
+        if (results.isEmpty()) {
+            return;
+        }
+        List<Object> ids = new ArrayList<Object>(results.size());
+        for (QueryResult qresult : results) {
+            ids.add(ConvertionUtils.getIdValueFromIndex(clazz, qresult.id));
+        }
+        String idField = ConvertionUtils.getIdField(clazz).getName();
+        List<JPABase> objects = JPA.em().createQuery(
+                        "select e from " + clazz.getCanonicalName() + " as e where e." + idField + " in (:ids)")
+                        .setParameter("ids", ids).getResultList();
+        Map<String, JPABase> objectsById = new HashMap<String, JPABase>();
+        for (JPABase object : objects) {
+            objectsById.put(ConvertionUtils.getIdValueFor(object) + "", object);
+        }
+        for (QueryResult qresult : results) {
+            qresult.object = objectsById.get(qresult.id);
+            if (qresult.object == null)
+                throw new SearchException("Please re-index");
+        }
+    }
+
     public static class QueryResult {
         public String id;
 
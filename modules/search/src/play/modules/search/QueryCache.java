@@ -0,0 +1,96 @@
+package play.modules.search;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.lucene.queryParser.ParseException;
+import org.apache.lucene.queryParser.QueryParser;
+
+import play.Play;
+import play.libs.Time;
+
+/**
+ * Caches of the search module: parsed Lucene queries, and the results of the recent searches.
+ * <p/>
+ * Results are kept for a short time (play.search.resultCache.ttl, default 30s) and only as long as
+ * the index they come from hasn't changed: the key contains the generation of the index reader.
+ * Both caches are bounded LRUs (play.search.queryCache.size and play.search.resultCache.size, default 500).
+ */
+public class QueryCache {
+
+    /** The ids and scores of the top documents of a search */
+    public static class Results {
+        public final int totalHits;
+        public final String[] ids;
+        public final float[] scores;
+        final long expiration;
+
+        public Results(int totalHits, String[] ids, float[] scores) {
+            this.totalHits = totalHits;
+            this.ids = ids;
+            this.scores = scores;
+            this.expiration = System.currentTimeMillis()
+                            + Time.parseDuration(Play.configuration.getProperty("play.search.resultCache.ttl", "30s")) * 1000L;
+        }
+    }
+
+    private static final Map<String, org.apache.lucene.search.Query> parsedQueries = lru("play.search.queryCache.size");
+
+    private static final Map<String, Results> results = lru("play.search.resultCache.size");
+
+    /**
+     * @return the parsed query, parsing it only if it isn't in the cache
+     */
+    public static org.apache.lucene.search.Query parse(String query) throws ParseException {
+        synchronized (parsedQueries) {
+            org.apache.lucene.search.Query parsed = parsedQueries.get(query);
+            if (parsed != null) {
+                return parsed;
+            }
+        }
+        // QueryParser is not thread safe, use a new one for each query
+        org.apache.lucene.search.Query parsed = new QueryParser("_docID", Search.getAnalyser()).parse(query);
+        synchronized (parsedQueries) {
+            parsedQueries.put(query, parsed);
+        }
+        return parsed;
+    }
+
+    /**
+     * @return the cached results of this search, null if not found or expired
+     */
+    public static Results getResults(String key) {
+        synchronized (results) {
+            Results cached = results.get(key);
+            if (cached != null && cached.expiration < System.currentTimeMillis()) {
+                results.remove(key);
+                return null;
+            }
+            return cached;
+        }
+    }
+
+    public static void putResults(String key, Results searchResults) {
+        synchronized (results) {
+            results.put(key, searchResults);
+        }
+    }
+
+    public static void clear() {
+        synchronized (parsedQueries) {
+            parsedQueries.clear();
+        }
+        synchronized (results) {
+            results.clear();
+        }
+    }
+
+    private static <V> Map<String, V> lru(final String sizeProperty) {
+        return new LinkedHashMap<String, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > Integer.parseInt(Play.configuration.getProperty(sizeProperty, "500"));
+            }
+        };
+    }
+}
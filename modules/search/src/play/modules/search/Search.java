@@ -5,6 +5,7 @@ import org.apache.lucene.analysis.Analyzer;
 import play.Logger;
 import play.Play;
 import play.exceptions.UnexpectedException;
+import play.modules.search.store.IndexedClass;
 import play.modules.search.store.Store;
 
 /**
@@ -23,6 +24,8 @@ import play.modules.search.store.Store;
 public class Search {
     private static String ANALYSER_CLASS;
     private static Store store;
+    /** analyzers are thread safe, one instance of the configured class is shared */
+    private static Analyzer analyser;
 
     public static void init() {
         try {
@@ -31,6 +34,10 @@ public class Search {
             Logger.error(e, "Error while shutting down search module");
         }
         ANALYSER_CLASS = Play.configuration.getProperty("play.search.analyser", "org.apache.lucene.analysis.standard.StandardAnalyzer");
+        // queries parsed with the previous analyser cannot be reused
+        QueryCache.clear();
+        // the classes may have been reloaded
+        IndexedClass.clear();
         String storeClassName = Play.configuration.getProperty("play.search.store","play.modules.search.store.FilesystemStore");
         try {
             store = (Store) Class.forName(storeClassName).newInstance();
@@ -41,12 +48,17 @@ public class Search {
     }
 
     public static Analyzer getAnalyser() {
-        try {
-            Class clazz = Class.forName(ANALYSER_CLASS);
-            return (Analyzer) clazz.newInstance();
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+        Analyzer current = analyser;
+        if (current == null || !current.getClass().getName().equals(ANALYSER_CLASS)) {
+            try {
+                Class clazz = Class.forName(ANALYSER_CLASS);
+                current = (Analyzer) clazz.newInstance();
+                analyser = current;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
         }
+        return current;
     }
 
     public static Store getCurrentStore () {
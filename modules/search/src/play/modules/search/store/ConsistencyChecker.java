@@ -0,0 +1,105 @@
+package play.modules.search.store;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+
+import play.Logger;
+import play.Play;
+import play.db.jpa.JPA;
+
+/**
+ * Compares an index with its table, without reading either entirely.
+ * <p/>
+ * Counts the objects, then samples ids on both sides: a random window of ids from the database
+ * looked for in the index, and random documents of the index looked for in the database.
+ * Only the objects matching the where condition of their @Indexed annotation are expected in the index.
+ * The results are kept in the {@link IndexMetrics} of the index.
+ * Sample size: play.search.consistency.sampleSize (default 100).
+ */
+public class ConsistencyChecker {
+
+    private final Random random = new Random();
+
+    private final Store store;
+
+    public ConsistencyChecker(Store store) {
+        this.store = store;
+    }
+
+    public void check(Class clazz) throws Exception {
+        int sampleSize = Integer.parseInt(Play.configuration.getProperty("play.search.consistency.sampleSize", "100"));
+        String name = clazz.getName();
+        String entity = clazz.getCanonicalName();
+        String idField = ConvertionUtils.getIdField(clazz).getName();
+        String where = IndexedClass.of(clazz).where;
+        String indexed = " from " + entity + " as e" + (where.length() == 0 ? "" : " where (" + where + ")");
+        EntityManager em = JPA.em();
+        IndexMetrics metrics = IndexMetrics.get(name);
+
+        long jpaCount = (Long) em.createQuery("select count(*)" + indexed).getSingleResult();
+        IndexReader reader = store.getIndexSearcher(name).getIndexReader();
+
+        // database -> index
+        int first = jpaCount > sampleSize ? random.nextInt((int) Math.min(jpaCount - sampleSize, Integer.MAX_VALUE)) : 0;
+        List<Object> dbIds = em.createQuery("select e." + idField + indexed + " order by e." + idField)
+                        .setFirstResult(first).setMaxResults(sampleSize).getResultList();
+        int missingInIndex = 0;
+        for (Object id : dbIds) {
+            if (!contains(reader, id + "")) {
+                missingInIndex++;
+            }
+        }
+
+        // index -> database
+        List<Object> indexIds = new ArrayList<Object>();
+        int maxDoc = reader.maxDoc();
+        for (int i = 0; i < sampleSize && maxDoc > 0; i++) {
+            int doc = random.nextInt(maxDoc);
+            if (!reader.isDeleted(doc)) {
+                indexIds.add(ConvertionUtils.getIdValueFromIndex(clazz, reader.document(doc).get("_docID")));
+            }
+        }
+        int missingInDb = 0;
+        if (!indexIds.isEmpty()) {
+            Set<Object> found = new HashSet<Object>(em.createQuery("select e." + idField + indexed
+                            + (where.length() == 0 ? " where " : " and ") + "e." + idField + " in (:ids)").setParameter("ids", indexIds).getResultList());
+            for (Object id : indexIds) {
+                if (!found.contains(id)) {
+                    missingInDb++;
+                }
+            }
+        }
+
+        metrics.jpaCount = jpaCount;
+        metrics.sampled = dbIds.size() + indexIds.size();
+        metrics.missingInIndex = missingInIndex;
+        metrics.missingInDb = missingInDb;
+        metrics.checkedAt = new Date();
+        if (missingInIndex > 0 || missingInDb > 0) {
+            Logger.warn("Search index %s drifts from the database: %s/%s sampled objects not indexed, %s/%s sampled documents without object",
+                            name, missingInIndex, dbIds.size(), missingInDb, indexIds.size());
+        }
+    }
+
+    /**
+     * @return true if a document with this id is in the index (and not deleted)
+     */
+    private static boolean contains(IndexReader reader, String docId) throws Exception {
+        TermDocs termDocs = reader.termDocs(new Term("_docID", docId));
+        try {
+            return termDocs.next();
+        } finally {
+            termDocs.close();
+        }
+    }
+}
@@ -1,12 +1,11 @@
 package play.modules.search.store;
 
-import java.util.Collection;
-
-import javax.persistence.Id;
-import javax.persistence.ManyToOne;
+import java.util.Date;
 
+import org.apache.lucene.document.DateTools;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumberTools;
 
 import play.Logger;
 import play.data.binding.Binder;
@@ -14,7 +13,6 @@ import play.db.jpa.FileAttachment;
 import play.db.jpa.JPABase;
 import play.db.jpa.Model;
 import play.exceptions.UnexpectedException;
-import play.modules.search.Indexed;
 
 /**
  * Various utils handling object to index and query result to object conversion
@@ -30,8 +28,8 @@ public class ConvertionUtils {
      * @throws Exception
      */
     public static Document toDocument(Object object) throws Exception {
-        Indexed indexed = object.getClass().getAnnotation(Indexed.class);
-        if (indexed == null)
+        IndexedClass indexedClass = IndexedClass.of(object.getClass());
+        if (!indexedClass.indexed)
             return null;
         if (!(object instanceof JPABase))
             return null;
@@ -39,28 +37,20 @@ public class ConvertionUtils {
         Document document = new Document();
         document.add(new Field("_docID", getIdValueFor(jpaBase) + "", Field.Store.YES, Field.Index.UN_TOKENIZED));
         StringBuffer allValue = new StringBuffer();
-        for (java.lang.reflect.Field field : object.getClass().getFields()) {
-            play.modules.search.Field index = field.getAnnotation(play.modules.search.Field.class);
-            if (index == null)
-                continue;
-            if (field.getType().isArray())
-                continue;
-            if (Collection.class.isAssignableFrom(field.getType()))
-                continue;
-
-            String name = field.getName();
+        for (IndexedClass.Mapping mapping : indexedClass.indexedFields) {
+            play.modules.search.Field index = mapping.index;
+            String name = mapping.name;
             String value = null;
 
-            if (JPABase.class.isAssignableFrom(field.getType()) && !(index.joinField().length() == 0)) {
-                JPABase joinObject = (JPABase ) field.get(object);
-                for (java.lang.reflect.Field joinField : joinObject.getClass().getFields()) {
-                    if (joinField.getName().equals(index.joinField())) {
-                        name = joinField.getName();
-                        value = valueOf(joinObject, joinField);
-                    }
+            if (mapping.joinField != null) {
+                JPABase joinObject = (JPABase ) mapping.field.get(object);
+                IndexedClass.Mapping joinMapping = IndexedClass.of(joinObject.getClass()).fields.get(mapping.joinField);
+                if (joinMapping != null) {
+                    name = joinMapping.name;
+                    value = valueOf(joinObject, joinMapping);
                 }
             } else {
-                value = valueOf(object, field);
+                value = valueOf(object, mapping);
             }
 
             if (value == null)
@@ -79,19 +69,42 @@ public class ConvertionUtils {
     }
 
     public static String valueOf(Object object, java.lang.reflect.Field field) throws Exception {
-        if (field.getType().equals(String.class)) {
-            return (String ) field.get(object);
+        IndexedClass.Mapping mapping = IndexedClass.of(field.getDeclaringClass()).fields.get(field.getName());
+        return valueOf(object, mapping != null && mapping.field.equals(field) ? mapping : new IndexedClass.Mapping(field));
+    }
+
+    private static String valueOf(Object object, IndexedClass.Mapping mapping) throws Exception {
+        Object o = mapping.field.get(object);
+        switch (mapping.kind) {
+        case STRING:
+            return (String ) o;
+        case FILE:
+            if (o != null) {
+                return FileExtractor.getText((FileAttachment ) o);
+            }
+            break;
+        case MANY_TO_ONE:
+            if (o instanceof JPABase) {
+                return "" + getIdValueFor((JPABase ) o);
+            }
+            break;
         }
-        if (field.getType().equals(FileAttachment.class) && field.get(object) != null) {
-            return FileExtractor.getText((FileAttachment ) field.get(object));
+        // dates and integers are indexed so that their lexicographic order is their natural order, for range filters and sorts
+        if (o instanceof Date) {
+            return dateToString((Date ) o);
         }
-
-        Object o = field.get(object);
-        if (field.isAnnotationPresent(ManyToOne.class) && o instanceof JPABase) {
-            return "" + getIdValueFor((JPABase ) o);
+        if (o instanceof Long || o instanceof Integer || o instanceof Short || o instanceof Byte) {
+            return NumberTools.longToString(((Number ) o).longValue());
         }
 
-        return "" + field.get(object);
+        return "" + o;
+    }
+
+    /**
+     * @return the value indexed for a date field
+     */
+    public static String dateToString(Date date) {
+        return DateTools.dateToString(date, DateTools.Resolution.MINUTE);
     }
 
     /**
@@ -120,13 +133,12 @@ public class ConvertionUtils {
      * @return corresponding field
      */
     public static java.lang.reflect.Field getIdField(Class clazz) {
-        for (java.lang.reflect.Field field : clazz.getFields()) {
-            if (field.getAnnotation(Id.class) != null) {
-                return field;
-            }
+        java.lang.reflect.Field field = IndexedClass.of(clazz).idField;
+        if (field == null) {
+            throw new RuntimeException("Your class " + clazz.getName()
+                            + " is annotated with javax.persistence.Id but the field Id was not found");
         }
-        throw new RuntimeException("Your class " + clazz.getName()
-                        + " is annotated with javax.persistence.Id but the field Id was not found");
+        return field;
     }
 
     /**
@@ -138,7 +150,8 @@ public class ConvertionUtils {
      */
     public static Object getIdValueFor(JPABase jpaBase) {
         if (jpaBase instanceof Model) {
-            return ((Model ) jpaBase).id;
+            // getId() and not id : the object can be a lazy loading proxy whose fields are not set
+            return ((Model ) jpaBase).getId();
         }
 
         java.lang.reflect.Field field = getIdField(jpaBase.getClass());
@@ -153,13 +166,11 @@ public class ConvertionUtils {
     }
 
     public static boolean isForcedUntokenized(Class clazz, String fieldName) {
-        try {
-            java.lang.reflect.Field field = clazz.getField(fieldName);
-            play.modules.search.Field index = field.getAnnotation(play.modules.search.Field.class);
-            return index.tokenize() && index.sortable();
-        } catch (Exception e) {
-            Logger.error("%s", e.getCause());
+        IndexedClass.Mapping mapping = IndexedClass.of(clazz).fields.get(fieldName);
+        if (mapping == null || mapping.index == null) {
+            Logger.error("%s is not an indexed field of %s", fieldName, clazz.getName());
+            return false;
         }
-        return false;
+        return mapping.index.tokenize() && mapping.index.sortable();
     }
 }
@@ -0,0 +1,125 @@
+package play.modules.search.store;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Fieldable;
+
+/**
+ * Remembers a fingerprint of the last document written for each object, so that
+ * saving an object whose indexed fields haven't changed doesn't rewrite its document.
+ * <p/>
+ * A fingerprint is only recorded once its document has been written to the index: if the write fails,
+ * the next save of the object writes it again.
+ * <p/>
+ * Also counts, per index, the documents written and the ones skipped because they were unchanged.
+ */
+public class DocumentFingerprints {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /** index name + '#' + document id -> fingerprint of the last document written */
+    private final Map<String, Long> fingerprints = new ConcurrentHashMap<String, Long>();
+
+    private final Map<String, AtomicLong> indexed = new ConcurrentHashMap<String, AtomicLong>();
+
+    private final Map<String, AtomicLong> skipped = new ConcurrentHashMap<String, AtomicLong>();
+
+    /**
+     * @return true if the document is the same as the last one written for this id, which then doesn't need to be written
+     */
+    public boolean unchanged(String index, String docId, Document document) {
+        Long previous = fingerprints.get(index + "#" + docId);
+        if (previous != null && previous.longValue() == fingerprint(document)) {
+            counter(skipped, index).incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * The document has been written to the index
+     */
+    public void written(String index, String docId, Document document) {
+        fingerprints.put(index + "#" + docId, fingerprint(document));
+        counter(indexed, index).incrementAndGet();
+    }
+
+    public void remove(String index, String docId) {
+        fingerprints.remove(index + "#" + docId);
+    }
+
+    /**
+     * Forgets the fingerprints of an index, when it is rebuilt or deleted
+     */
+    public void clear(String index) {
+        String prefix = index + "#";
+        for (Iterator<String> keys = fingerprints.keySet().iterator(); keys.hasNext();) {
+            if (keys.next().startsWith(prefix)) {
+                keys.remove();
+            }
+        }
+    }
+
+    public void clearAll() {
+        fingerprints.clear();
+    }
+
+    /**
+     * @return the number of documents written to this index since startup
+     */
+    public long indexedCount(String index) {
+        return counter(indexed, index).get();
+    }
+
+    /**
+     * @return the number of documents not written to this index since startup because they were unchanged
+     */
+    public long skippedCount(String index) {
+        return counter(skipped, index).get();
+    }
+
+    /**
+     * 64 bits FNV-1a hash of the names and values of the fields of the document
+     */
+    static long fingerprint(Document document) {
+        long hash = FNV_OFFSET;
+        for (Object o : document.getFields()) {
+            Fieldable field = (Fieldable) o;
+            hash = hash(hash, field.name());
+            hash = hash(hash, field.stringValue());
+        }
+        return hash;
+    }
+
+    private static long hash(long hash, String value) {
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                hash ^= value.charAt(i);
+                hash *= FNV_PRIME;
+            }
+        }
+        // separator, so that ("ab", "c") and ("a", "bc") differ
+        hash ^= 0xffff;
+        hash *= FNV_PRIME;
+        return hash;
+    }
+
+    private static AtomicLong counter(Map<String, AtomicLong> counters, String index) {
+        AtomicLong counter = counters.get(index);
+        if (counter == null) {
+            synchronized (counters) {
+                counter = counters.get(index);
+                if (counter == null) {
+                    counter = new AtomicLong();
+                    counters.put(index, counter);
+                }
+            }
+        }
+        return counter;
+    }
+}
@@ -5,6 +5,7 @@ import java.io.FileFilter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -20,9 +21,9 @@ import org.apache.lucene.store.FSDirectory;
 import play.Logger;
 import play.Play;
 import play.classloading.ApplicationClasses.ApplicationClass;
-import play.db.jpa.JPA;
 import play.db.jpa.JPABase;
 import play.exceptions.UnexpectedException;
+import play.libs.Time;
 import play.modules.search.Indexed;
 import play.modules.search.Search;
 
@@ -36,6 +37,18 @@ public class FilesystemStore implements Store {
 
     public static boolean sync = true;
 
+    /** when play.search.refreshInterval is set, index operations are applied in batches by this queue */
+    private IndexingQueue queue;
+
+    /** most saves don't change the indexed fields, their documents are not written again */
+    private DocumentFingerprints fingerprints = new DocumentFingerprints();
+
+    /** index name -> number of times its reader has been reopened */
+    private Map<String, Long> generations = new HashMap<String, Long>();
+
+    /** index being rebuilt -> the documents written to its current version since the rebuild started */
+    private Map<String, Map<String, Document>> rebuildBacklogs = new HashMap<String, Map<String, Document>>();
+
     public void unIndex(Object object) {
         try {
             if (!(object instanceof JPABase))
@@ -44,10 +57,15 @@ public class FilesystemStore implements Store {
                 return;
             JPABase jpaBase = (JPABase ) object;
             String index = object.getClass().getName();
-            getIndexWriter(index).deleteDocuments(new Term("_docID", ConvertionUtils.getIdValueFor(jpaBase) + ""));
+            String docId = ConvertionUtils.getIdValueFor(jpaBase) + "";
+            fingerprints.remove(index, docId);
+            if (queue != null) {
+                queue.unIndex(index, docId);
+                return;
+            }
+            write(index, docId, null);
             if (sync) {
-                getIndexWriter(index).flush();
-                dirtyReader(index);
+                refresh(index);
             }
         } catch (Exception e) {
             throw new UnexpectedException(e);
@@ -61,14 +79,23 @@ public class FilesystemStore implements Store {
                 return;
             }
             JPABase jpaABase = (JPABase ) object;
+            // the document is built now, the object may not be readable anymore when the queue writes it
             Document document = ConvertionUtils.toDocument(object);
             if (document == null)
                 return;
-            getIndexWriter(index).deleteDocuments(new Term("_docID", ConvertionUtils.getIdValueFor(jpaABase) + ""));
-            getIndexWriter(index).addDocument(document);
+            String docId = ConvertionUtils.getIdValueFor(jpaABase) + "";
+            if (fingerprints.unchanged(index, docId, document))
+                return;
+            if (queue != null) {
+                // the queued document is the one to compare the next saves with, not the last one written:
+                // forgotten until written, so that saving the previous version again before the next batch is not skipped
+                fingerprints.remove(index, docId);
+                queue.index(index, docId, document);
+                return;
+            }
+            write(index, docId, document);
             if (sync) {
-                getIndexWriter(index).flush();
-                dirtyReader(index);
+                refresh(index);
             } else {
                 if (getIndexWriter(index).ramSizeInBytes() > 1024 * 1024 * 48) {
                     getIndexWriter(index).flush();
@@ -80,6 +107,43 @@ public class FilesystemStore implements Store {
         }
     }
     
+    /**
+     * Replaces the document with this id in the index, or only deletes it if document is null
+     */
+    void write(String index, String docId, Document document) {
+        // forgotten until written: if the write fails, the next save of the object is not skipped
+        fingerprints.remove(index, docId);
+        try {
+            synchronized (this) {
+                // the index is being rebuilt, this change will have to be written again to the new index
+                Map<String, Document> backlog = rebuildBacklogs.get(index);
+                if (backlog != null) {
+                    backlog.put(docId, document);
+                }
+            }
+            getIndexWriter(index).deleteDocuments(new Term("_docID", docId));
+            if (document != null) {
+                getIndexWriter(index).addDocument(document);
+                fingerprints.written(index, docId, document);
+            }
+            IndexMetrics.get(index).written();
+        } catch (Exception e) {
+            throw new UnexpectedException(e);
+        }
+    }
+
+    /**
+     * Makes the written documents visible to the searches
+     */
+    void refresh(String index) {
+        try {
+            getIndexWriter(index).flush();
+            dirtyReader(index);
+        } catch (Exception e) {
+            throw new UnexpectedException(e);
+        }
+    }
+
     public IndexSearcher getIndexSearcher(String name) {
         try {
             if (!indexSearchers.containsKey(name)) {
@@ -87,7 +151,9 @@ public class FilesystemStore implements Store {
                     File root = new File(DATA_PATH, name);
                     if (!root.exists())
                         getIndexWriter(name);
+                    long start = System.currentTimeMillis();
                     IndexSearcher reader = new IndexSearcher(FSDirectory.getDirectory(root));
+                    IndexMetrics.get(name).reopened(System.currentTimeMillis() - start);
                     indexSearchers.put(name, reader);
                 }
             }
@@ -104,6 +170,7 @@ public class FilesystemStore implements Store {
      */
     public void dirtyReader(String name) {
         synchronized (this) {
+            generations.put(name, generation(name) + 1);
             try {
                 if (indexSearchers.containsKey(name)) {
                     IndexReader rd = indexSearchers.get(name).getIndexReader();
@@ -125,7 +192,9 @@ public class FilesystemStore implements Store {
                         root.mkdirs();
                     if (new File(root, "write.lock").exists())
                         new File(root, "write.lock").delete();
-                    IndexWriter writer = new IndexWriter(FSDirectory.getDirectory(root), true, Search.getAnalyser());
+                    // only create a new index if there is none, otherwise a rebuilt index would be erased when reopened
+                    boolean create = !IndexReader.indexExists(root);
+                    IndexWriter writer = new IndexWriter(FSDirectory.getDirectory(root), create, Search.getAnalyser());
                     indexWriters.put(name, writer);
                 }
             }
@@ -136,18 +205,9 @@ public class FilesystemStore implements Store {
     }
 
     public void rebuildAllIndexes() throws Exception {
-        stop();
-        File fl = new File(DATA_PATH);
-        FileUtils.deleteDirectory(fl);
-        fl.mkdirs();
         List<ApplicationClass> classes = Play.classes.getAnnotatedClasses(Indexed.class);
         for (ApplicationClass applicationClass : classes) {
-            List<JPABase> objects = JPA.em().createQuery(
-                                            "select e from " + applicationClass.javaClass.getCanonicalName() + " as e")
-                                            .getResultList();
-            for (JPABase jpaBase : objects) {
-                index(jpaBase, applicationClass.javaClass.getName());
-            }
+            rebuild(applicationClass.javaClass.getName());
         }
         Logger.info("Rebuild index finished");
     }
@@ -160,7 +220,12 @@ public class FilesystemStore implements Store {
             index.name = applicationClass.javaClass.getName();
             index.optimized = getIndexSearcher(index.name).getIndexReader().isOptimized();
             index.documentCount = getIndexSearcher(index.name).getIndexReader().numDocs();
-            index.jpaCount =  (Long ) JPA.em().createQuery("select count (*) from " + applicationClass.javaClass.getCanonicalName()+ ")").getSingleResult();
+            index.indexedCount = fingerprints.indexedCount(index.name);
+            index.skippedCount = fingerprints.skippedCount(index.name);
+            index.queueDepth = queue == null ? 0 : queue.size(index.name);
+            index.sizeOnDisk = FileUtils.sizeOfDirectory(new File(DATA_PATH, index.name));
+            // the objects are counted by the consistency checker, not on each view
+            IndexMetrics.get(index.name).fill(index);
             indexes.add(index);
         }
         return indexes;
@@ -174,9 +239,39 @@ public class FilesystemStore implements Store {
         Logger.trace("Search module repository is in " + DATA_PATH);
         sync = Boolean.parseBoolean(Play.configuration.getProperty("play.search.synch", "true"));
         Logger.trace("Write operations sync: " + sync);
+        if (Play.configuration.containsKey("play.search.refreshInterval")) {
+            int interval = Time.parseDuration(Play.configuration.getProperty("play.search.refreshInterval"));
+            startQueue(interval * 1000L);
+            Logger.trace("Write operations queued, readers refreshed every %ss", interval);
+        }
+    }
+
+    /**
+     * Applies the index operations in batches, every intervalMillis
+     */
+    public void startQueue(long intervalMillis) {
+        queue = new IndexingQueue(this, intervalMillis);
+        queue.start();
+    }
+
+    /**
+     * Writes the queued index operations now, if they are queued
+     */
+    public void flushQueue() {
+        if (queue != null) {
+            queue.flush();
+        }
     }
 
     public void stop() throws Exception {
+        if (queue != null) {
+            queue.stop();
+            queue = null;
+        }
+        closeAll();
+    }
+
+    private void closeAll() throws Exception {
         for (IndexWriter writer : indexWriters.values()) {
             writer.close();
         }
@@ -196,26 +291,51 @@ public class FilesystemStore implements Store {
         }
     }
 
+    /**
+     * Builds the index in a new folder and then swaps it with the current one. Searches use the current index
+     * until the swap, and the objects saved meanwhile are written again to the new index after the swap.
+     */
     public void rebuild(String name) {
-        String id = UUID.randomUUID().toString();
         File oldFolder = new File(DATA_PATH, name);
-        File newFolder = new File(DATA_PATH, name + id);
+        File newFolder = new File(DATA_PATH, name + "-rebuild-" + UUID.randomUUID().toString());
         Class cl = Play.classes.getApplicationClass(name).javaClass;
-        List<JPABase> objects = JPA.em().createQuery("select e from " + cl.getCanonicalName() + " as e").getResultList();
-        for (JPABase jpaBase : objects) {
-            index(jpaBase, cl.getName() + id);
+        synchronized (this) {
+            rebuildBacklogs.put(name, new LinkedHashMap<String, Document>());
         }
-        // FIXME ensure no other read/writes in here.
         try {
-            getIndexWriter(cl.getName() + id).flush();
-            dirtyReader(cl.getName() + id);
-            getIndexSearcher(name).close();
-            indexSearchers.remove(name);
-            getIndexWriter(name).close();
-            indexWriters.remove(name);
-            FileUtils.deleteDirectory(oldFolder);
-            newFolder.renameTo(oldFolder);
-        } catch (IOException e) {
+            int count = new IndexRebuilder(cl, newFolder).rebuild();
+            Map<String, Document> backlog;
+            synchronized (this) {
+                if (indexSearchers.containsKey(name)) {
+                    indexSearchers.get(name).close();
+                    indexSearchers.remove(name);
+                }
+                if (indexWriters.containsKey(name)) {
+                    indexWriters.get(name).close();
+                    indexWriters.remove(name);
+                }
+                File trash = new File(DATA_PATH, name + "-old-" + UUID.randomUUID().toString());
+                if (oldFolder.exists() && !oldFolder.renameTo(trash))
+                    throw new IOException("Cannot move " + oldFolder + " away");
+                if (!newFolder.renameTo(oldFolder))
+                    throw new IOException("Cannot move " + newFolder + " to " + oldFolder);
+                fingerprints.clear(name);
+                backlog = rebuildBacklogs.remove(name);
+                FileUtils.deleteDirectory(trash);
+            }
+            for (Map.Entry<String, Document> operation : backlog.entrySet()) {
+                write(name, operation.getKey(), operation.getValue());
+            }
+            refresh(name);
+            Logger.info("Index %s rebuilt: %s documents, %s written again after the swap", name, count, backlog.size());
+        } catch (Exception e) {
+            synchronized (this) {
+                rebuildBacklogs.remove(name);
+            }
+            try {
+                FileUtils.deleteDirectory(newFolder);
+            } catch (IOException ignored) {
+            }
             throw new UnexpectedException(e);
         }
     }
@@ -224,8 +344,14 @@ public class FilesystemStore implements Store {
         dirtyReader(name);
     }
 
+    public synchronized long generation(String name) {
+        Long generation = generations.get(name);
+        return generation == null ? 0 : generation;
+    }
+
     public void delete(String name) {
         synchronized (this) {
+            generations.put(name, generation(name) + 1);
             try {
                 if (indexSearchers.containsKey(name)) {
                     IndexReader rd = indexSearchers.get(name).getIndexReader();
@@ -239,6 +365,7 @@ public class FilesystemStore implements Store {
                 File target = new File(DATA_PATH, name);
                 if (target.exists() && target.isDirectory())
                     FileUtils.deleteDirectory(target);
+                fingerprints.clear(name);
             } catch (Exception e) {
                 throw new UnexpectedException("Can't reopen reader", e);
             }
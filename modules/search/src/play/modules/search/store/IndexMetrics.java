@@ -0,0 +1,130 @@
+package play.modules.search.store;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Health of an index since startup: documents written per second, reader reopens, query latencies,
+ * and the last results of the {@link ConsistencyChecker}.
+ * <p/>
+ * Recording is cheap (a few atomic increments) so it is always on.
+ */
+public class IndexMetrics {
+
+    /** upper bounds (excluded) in milliseconds of the query latency buckets, the last bucket has no bound */
+    public static final long[] LATENCY_BOUNDS = { 1, 5, 10, 50, 100, 500 };
+
+    /** the writes per second are kept for this number of seconds */
+    private static final int WRITE_WINDOW = 60;
+
+    private static final Map<String, IndexMetrics> metrics = new ConcurrentHashMap<String, IndexMetrics>();
+
+    private final AtomicLong reopenCount = new AtomicLong();
+    private final AtomicLong reopenTotalMillis = new AtomicLong();
+    private volatile long reopenMaxMillis;
+
+    private final AtomicLongArray queryLatencies = new AtomicLongArray(LATENCY_BOUNDS.length + 1);
+    private final AtomicLong queryTotalMillis = new AtomicLong();
+    private final AtomicLong queryCacheHits = new AtomicLong();
+
+    /** documents written during each of the last seconds, the slot of a second is reset when reused */
+    private final long[] writes = new long[WRITE_WINDOW];
+    private final long[] writeSeconds = new long[WRITE_WINDOW];
+
+    /** number of objects in the database, -1 until counted */
+    volatile long jpaCount = -1;
+    volatile int sampled;
+    volatile int missingInIndex;
+    volatile int missingInDb;
+    volatile Date checkedAt;
+
+    /**
+     * @return the metrics of this index, created on first use
+     */
+    public static IndexMetrics get(String index) {
+        IndexMetrics indexMetrics = metrics.get(index);
+        if (indexMetrics == null) {
+            synchronized (metrics) {
+                indexMetrics = metrics.get(index);
+                if (indexMetrics == null) {
+                    indexMetrics = new IndexMetrics();
+                    metrics.put(index, indexMetrics);
+                }
+            }
+        }
+        return indexMetrics;
+    }
+
+    public void reopened(long millis) {
+        reopenCount.incrementAndGet();
+        reopenTotalMillis.addAndGet(millis);
+        if (millis > reopenMaxMillis) {
+            reopenMaxMillis = millis;
+        }
+    }
+
+    public void queried(long millis) {
+        int bucket = 0;
+        while (bucket < LATENCY_BOUNDS.length && millis >= LATENCY_BOUNDS[bucket]) {
+            bucket++;
+        }
+        queryLatencies.incrementAndGet(bucket);
+        queryTotalMillis.addAndGet(millis);
+    }
+
+    /**
+     * A search answered by the result cache
+     */
+    public void cacheHit() {
+        queryCacheHits.incrementAndGet();
+    }
+
+    public synchronized void written() {
+        long second = System.currentTimeMillis() / 1000;
+        int slot = (int) (second % WRITE_WINDOW);
+        if (writeSeconds[slot] != second) {
+            writeSeconds[slot] = second;
+            writes[slot] = 0;
+        }
+        writes[slot]++;
+    }
+
+    /**
+     * @return the average number of documents written per second over the last minute
+     */
+    public synchronized double docsPerSecond() {
+        long now = System.currentTimeMillis() / 1000;
+        long total = 0;
+        for (int i = 0; i < WRITE_WINDOW; i++) {
+            if (now - writeSeconds[i] < WRITE_WINDOW) {
+                total += writes[i];
+            }
+        }
+        return (double) total / WRITE_WINDOW;
+    }
+
+    /**
+     * Copies the metrics to the description of the index
+     */
+    public void fill(ManagedIndex index) {
+        index.docsPerSecond = docsPerSecond();
+        index.reopenCount = reopenCount.get();
+        index.reopenAverageMillis = index.reopenCount == 0 ? 0 : reopenTotalMillis.get() / index.reopenCount;
+        index.reopenMaxMillis = reopenMaxMillis;
+        index.queryLatencies = new long[queryLatencies.length()];
+        for (int i = 0; i < index.queryLatencies.length; i++) {
+            index.queryLatencies[i] = queryLatencies.get(i);
+            index.queryCount += index.queryLatencies[i];
+        }
+        index.queryAverageMillis = index.queryCount == 0 ? 0 : queryTotalMillis.get() / index.queryCount;
+        index.queryCacheHits = queryCacheHits.get();
+        index.jpaCount = jpaCount;
+        index.sampled = sampled;
+        index.missingInIndex = missingInIndex;
+        index.missingInDb = missingInDb;
+        index.checkedAt = checkedAt;
+    }
+}
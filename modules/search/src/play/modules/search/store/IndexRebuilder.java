@@ -0,0 +1,109 @@
+package play.modules.search.store;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.persistence.EntityManager;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.FSDirectory;
+
+import play.Logger;
+import play.Play;
+import play.db.jpa.JPA;
+import play.db.jpa.JPABase;
+import play.modules.search.Search;
+
+/**
+ * Builds a whole index into a new folder, without holding all the objects in memory.
+ * <p/>
+ * Objects are read by chunks ordered by id, and the persistence context is cleared after each chunk.
+ * The documents are built on the calling thread (reading the objects needs its persistence context)
+ * and added to a dedicated writer by a pool of threads, where the analysis takes place.
+ * <p/>
+ * Configuration: play.search.rebuild.chunkSize (default 500), play.search.rebuild.threads
+ * (default number of processors) and play.search.rebuild.ramBufferMB (default 64).
+ */
+public class IndexRebuilder {
+
+    private final Class clazz;
+
+    private final File folder;
+
+    public IndexRebuilder(Class clazz, File folder) {
+        this.clazz = clazz;
+        this.folder = folder;
+    }
+
+    /**
+     * @return the number of documents written
+     */
+    public int rebuild() throws Exception {
+        int chunkSize = Integer.parseInt(Play.configuration.getProperty("play.search.rebuild.chunkSize", "500"));
+        int threads = Integer.parseInt(Play.configuration.getProperty("play.search.rebuild.threads",
+                        String.valueOf(Runtime.getRuntime().availableProcessors())));
+        double ramBufferMB = Double.parseDouble(Play.configuration.getProperty("play.search.rebuild.ramBufferMB", "64"));
+
+        folder.mkdirs();
+        final IndexWriter writer = new IndexWriter(FSDirectory.getDirectory(folder), true, Search.getAnalyser());
+        writer.setRAMBufferSizeMB(ramBufferMB);
+        // a bounded queue, when the workers are late the reading thread adds the documents itself
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS,
+                        new ArrayBlockingQueue<Runnable>(chunkSize), new ThreadPoolExecutor.CallerRunsPolicy());
+        final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+        int count = 0;
+        try {
+            String idField = ConvertionUtils.getIdField(clazz).getName();
+            EntityManager em = JPA.em();
+            // the persistence context is cleared after each chunk, don't lose what is pending in it
+            em.flush();
+            Object lastId = null;
+            while (failure.get() == null) {
+                javax.persistence.Query query = em.createQuery("select e from " + clazz.getCanonicalName() + " as e"
+                                + (lastId == null ? "" : " where e." + idField + " > :lastId")
+                                + " order by e." + idField);
+                if (lastId != null) {
+                    query.setParameter("lastId", lastId);
+                }
+                List<JPABase> objects = query.setMaxResults(chunkSize).getResultList();
+                if (objects.isEmpty()) {
+                    break;
+                }
+                for (JPABase jpaBase : objects) {
+                    final Document document = ConvertionUtils.toDocument(jpaBase);
+                    if (document == null) {
+                        continue;
+                    }
+                    workers.execute(new Runnable() {
+                        public void run() {
+                            try {
+                                writer.addDocument(document);
+                            } catch (Exception e) {
+                                failure.compareAndSet(null, e);
+                            }
+                        }
+                    });
+                    count++;
+                }
+                lastId = ConvertionUtils.getIdValueFor(objects.get(objects.size() - 1));
+                em.clear();
+                Logger.trace("Rebuilding %s: %s documents", clazz.getName(), count);
+            }
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+            writer.optimize();
+        } finally {
+            workers.shutdownNow();
+            writer.close();
+        }
+        return count;
+    }
+}
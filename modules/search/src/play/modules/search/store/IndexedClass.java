@@ -0,0 +1,120 @@
+package play.modules.search.store;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.persistence.Id;
+import javax.persistence.ManyToOne;
+
+import play.db.jpa.FileAttachment;
+import play.db.jpa.JPABase;
+import play.modules.search.Indexed;
+
+/**
+ * What the search module needs to know about a class, looked up by reflection once per class:
+ * its id field, and how each of its fields is indexed.
+ * <p/>
+ * Classes are reloaded in DEV mode, so the descriptors are cleared when the module is initialized.
+ */
+public class IndexedClass {
+
+    /** how the value of a field is converted to the indexed string */
+    enum Kind {
+        STRING, FILE, MANY_TO_ONE, OTHER
+    }
+
+    /** a public field of the class, with its @Field settings if it is indexed */
+    static class Mapping {
+        final Field field;
+        final String name;
+        final Kind kind;
+        /** null if the field is not indexed */
+        final play.modules.search.Field index;
+        /** the field of the joined object indexed in place of this one, if joinField is set on a relation */
+        final String joinField;
+
+        Mapping(Field field) {
+            this.field = field;
+            this.name = field.getName();
+            this.index = field.getAnnotation(play.modules.search.Field.class);
+            if (field.getType().equals(String.class)) {
+                kind = Kind.STRING;
+            } else if (field.getType().equals(FileAttachment.class)) {
+                kind = Kind.FILE;
+            } else if (field.isAnnotationPresent(ManyToOne.class)) {
+                kind = Kind.MANY_TO_ONE;
+            } else {
+                kind = Kind.OTHER;
+            }
+            boolean join = index != null && index.joinField().length() > 0
+                            && JPABase.class.isAssignableFrom(field.getType());
+            this.joinField = join ? index.joinField() : null;
+            // public fields of a public class don't need it, but it saves the access checks on each read
+            try {
+                field.setAccessible(true);
+            } catch (SecurityException e) {
+                // keep the checks
+            }
+        }
+    }
+
+    private static final Map<Class, IndexedClass> classes = new ConcurrentHashMap<Class, IndexedClass>();
+
+    final boolean indexed;
+
+    /** JPQL condition on the indexed objects (aliased e), empty if they are all indexed */
+    final String where;
+
+    /** null if the class has no public @Id field */
+    final Field idField;
+
+    /** the fields to index, in the order of getFields() */
+    final List<Mapping> indexedFields;
+
+    /** all the public fields by name */
+    final Map<String, Mapping> fields;
+
+    private IndexedClass(Class clazz) {
+        Indexed annotation = (Indexed) clazz.getAnnotation(Indexed.class);
+        indexed = annotation != null;
+        where = annotation == null ? "" : annotation.where();
+        Field id = null;
+        List<Mapping> indexedFields = new ArrayList<Mapping>();
+        Map<String, Mapping> fields = new HashMap<String, Mapping>();
+        for (Field field : clazz.getFields()) {
+            Mapping mapping = new Mapping(field);
+            if (!fields.containsKey(mapping.name)) {
+                fields.put(mapping.name, mapping);
+            }
+            if (id == null && field.getAnnotation(Id.class) != null) {
+                id = field;
+            }
+            if (mapping.index != null && !field.getType().isArray() && !Collection.class.isAssignableFrom(field.getType())) {
+                indexedFields.add(mapping);
+            }
+        }
+        this.idField = id;
+        this.indexedFields = Collections.unmodifiableList(indexedFields);
+        this.fields = Collections.unmodifiableMap(fields);
+    }
+
+    static IndexedClass of(Class clazz) {
+        IndexedClass indexedClass = classes.get(clazz);
+        if (indexedClass == null) {
+            // built twice at worst, both are the same
+            indexedClass = new IndexedClass(clazz);
+            classes.put(clazz, indexedClass);
+        }
+        return indexedClass;
+    }
+
+    public static void clear() {
+        classes.clear();
+    }
+}
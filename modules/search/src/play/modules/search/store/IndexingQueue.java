@@ -0,0 +1,123 @@
+package play.modules.search.store;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.lucene.document.Document;
+
+import play.Logger;
+
+/**
+ * Pending index operations, applied in batches by a single indexer thread.
+ * <p/>
+ * Operations are kept per index and per document id: if the same object is saved
+ * several times before the next batch, only its last version is written.
+ * After each batch the modified indexes are flushed and their readers reopened,
+ * so searches see the changes after at most one interval.
+ */
+public class IndexingQueue implements Runnable {
+
+    private final FilesystemStore store;
+
+    private final long intervalMillis;
+
+    /** index name -> document id -> document to write, null to only delete it */
+    private Map<String, Map<String, Document>> pending = new HashMap<String, Map<String, Document>>();
+
+    private Thread thread;
+
+    private volatile boolean running;
+
+    public IndexingQueue(FilesystemStore store, long intervalMillis) {
+        this.store = store;
+        this.intervalMillis = intervalMillis;
+    }
+
+    public synchronized void index(String index, String docId, Document document) {
+        pendingFor(index).put(docId, document);
+    }
+
+    public synchronized void unIndex(String index, String docId) {
+        pendingFor(index).put(docId, null);
+    }
+
+    /**
+     * @return the number of operations waiting for the next batch on this index
+     */
+    public synchronized int size(String index) {
+        Map<String, Document> operations = pending.get(index);
+        return operations == null ? 0 : operations.size();
+    }
+
+    public void start() {
+        running = true;
+        thread = new Thread(this, "search-indexer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the indexer thread once the pending operations are written
+     */
+    public void stop() throws InterruptedException {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            thread.join();
+            thread = null;
+        }
+        flush();
+    }
+
+    public void run() {
+        while (running) {
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                // stopping, the last operations are written by stop()
+                return;
+            }
+            try {
+                flush();
+            } catch (Exception e) {
+                Logger.error(e, "Search indexer: could not write the pending operations");
+            }
+        }
+    }
+
+    /**
+     * Writes all the pending operations now
+     */
+    public void flush() {
+        Map<String, Map<String, Document>> batch = drain();
+        for (Map.Entry<String, Map<String, Document>> entry : batch.entrySet()) {
+            String index = entry.getKey();
+            for (Map.Entry<String, Document> operation : entry.getValue().entrySet()) {
+                try {
+                    store.write(index, operation.getKey(), operation.getValue());
+                } catch (Exception e) {
+                    // the other operations of the batch are still written, this one will be on the next save of its object
+                    Logger.error(e, "Search indexer: could not write document %s to %s", operation.getKey(), index);
+                }
+            }
+            store.refresh(index);
+            Logger.trace("Search indexer: %s operations written to %s", entry.getValue().size(), index);
+        }
+    }
+
+    private synchronized Map<String, Map<String, Document>> drain() {
+        Map<String, Map<String, Document>> batch = pending;
+        pending = new HashMap<String, Map<String, Document>>();
+        return batch;
+    }
+
+    private Map<String, Document> pendingFor(String index) {
+        Map<String, Document> operations = pending.get(index);
+        if (operations == null) {
+            operations = new LinkedHashMap<String, Document>();
+            pending.put(index, operations);
+        }
+        return operations;
+    }
+}
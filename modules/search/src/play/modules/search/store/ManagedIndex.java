@@ -1,8 +1,35 @@
 package play.modules.search.store;
 
+import java.util.Date;
+
 public class ManagedIndex {
     public String name;
     public boolean optimized;
     public long documentCount;
+    /** objects in the database when last counted by the consistency checker, -1 if not counted yet */
     public long jpaCount;
+    /** documents written since startup */
+    public long indexedCount;
+    /** saves since startup whose document was not written again because it was unchanged */
+    public long skippedCount;
+    /** operations waiting in the indexing queue */
+    public long queueDepth;
+    /** over the last minute */
+    public double docsPerSecond;
+    /** size of the index files, in bytes */
+    public long sizeOnDisk;
+    public long reopenCount;
+    public long reopenAverageMillis;
+    public long reopenMaxMillis;
+    /** number of searches per latency bucket, see IndexMetrics.LATENCY_BOUNDS */
+    public long[] queryLatencies;
+    /** searches made on the index, not counting the ones answered by the result cache */
+    public long queryCount;
+    public long queryAverageMillis;
+    public long queryCacheHits;
+    /** last consistency check: ids sampled on each side, and the ones found on one side only */
+    public int sampled;
+    public int missingInIndex;
+    public int missingInDb;
+    public Date checkedAt;
 }
@@ -23,4 +23,6 @@ public interface Store {
     public void optimize (String name);
     public void rebuild (String name);
     public void reopen (String name);
+    /** incremented every time the reader of this index is reopened, searches of the same generation see the same documents */
+    public long generation (String name);
 }
@@ -2,3 +2,40 @@
 -- Reset this page after each release and after having created a SVN tag
 --
 
+
+-- users of each day, computed by the AnalyticsJob for Admin.analytics
+CREATE TABLE `DailyUserActivity` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT,
+  `forDate` datetime DEFAULT NULL,
+  `newUsers` bigint(20) NOT NULL,
+  `totalUsers` bigint(20) NOT NULL,
+  `activeUsers` bigint(20) NOT NULL,
+  `returningUsers` bigint(20) NOT NULL,
+  PRIMARY KEY (`id`),
+  KEY `DailyUserActivity_forDate` (`forDate`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+-- HyperLogLog sketches of the users of each type of visit per day, computed by the AnalyticsJob
+CREATE TABLE `DailyVisitSketch` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT,
+  `forDate` datetime DEFAULT NULL,
+  `visitType` varchar(255) DEFAULT NULL,
+  `targetId` bigint(20) DEFAULT NULL,
+  `sketch` longblob,
+  PRIMARY KEY (`id`),
+  KEY `DailyVisitSketch_type_target_date` (`visitType`,`targetId`,`forDate`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+-- views, votes and comments of each insight per day, added every minute by the EngagementWriterJob (one row per insight and day)
+CREATE TABLE `InsightDailyEngagement` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT,
+  `forDate` datetime DEFAULT NULL,
+  `insight_id` bigint(20) DEFAULT NULL,
+  `views` bigint(20) NOT NULL,
+  `agreeCount` bigint(20) NOT NULL,
+  `disagreeCount` bigint(20) NOT NULL,
+  `voteChanges` bigint(20) NOT NULL,
+  `commentCount` bigint(20) NOT NULL,
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `InsightDailyEngagement_insight_date` (`insight_id`,`forDate`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
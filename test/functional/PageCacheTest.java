@@ -0,0 +1,47 @@
+package functional;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import play.cache.Cache;
+import play.mvc.Http.Cookie;
+import play.mvc.Http.Response;
+import play.test.FunctionalTest;
+
+public class PageCacheTest extends FunctionalTest {
+
+	@Before
+	public void setup() {
+		clearCookies();
+		Cache.clear();
+	}
+
+	@Test
+	public void testSecondAnonymousVisitIsServedFromCache() {
+		Response first = GET("/faq");
+		assertIsOk(first);
+		assertNull(first.getHeader("X-Page-Cache"));
+		// the login form of the page must not give a session (and its authenticity token) to the visitor
+		Cookie session = first.cookies.get("PLAY_SESSION");
+		assertTrue(session == null || session.value.equals(""));
+		assertFalse(getContent(first).contains("authenticityToken"));
+
+		Response second = GET("/faq");
+		assertIsOk(second);
+		assertHeaderEquals("X-Page-Cache", "hit", second);
+		assertEquals(getContent(first), getContent(second));
+	}
+
+	@Test
+	public void testVisitorWithAuthenticityTokenIsServedFromCache() {
+		// the sign up page has a #{form} : the visitor gets an authenticity token in his session
+		assertIsOk(GET("/signup"));
+
+		Response first = GET("/faq");
+		assertIsOk(first);
+		assertFalse(getContent(first).contains("authenticityToken"));
+
+		Response second = GET("/faq");
+		assertHeaderEquals("X-Page-Cache", "hit", second);
+	}
+}
@@ -0,0 +1,72 @@
+package unit;
+import helpers.autocomplete.AutocompleteIndex;
+import helpers.autocomplete.AutocompleteIndex.Entry;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import play.test.UnitTest;
+
+public class AutocompleteIndexTest extends UnitTest {
+
+	private AutocompleteIndex index() {
+		List<Entry> entries = new ArrayList<Entry>();
+		entries.add(new Entry(1L, "Steren", 10));
+		entries.add(new Entry(2L, "stephane", 50));
+		entries.add(new Entry(3L, "Guillaume", 5));
+		entries.add(new Entry(4L, "christophe", 100));
+		entries.add(new Entry(5L, "apple", 20));
+		entries.add(new Entry(6L, "happy", 1000));
+		return new AutocompleteIndex(entries);
+	}
+
+	private List<Long> ids(List<Entry> entries) {
+		List<Long> ids = new ArrayList<Long>();
+		for (Entry entry : entries) {
+			ids.add(entry.id);
+		}
+		return ids;
+	}
+
+	@Test
+	public void prefixMatchesByPopularity() {
+		List<Entry> result = index().suggest("ste", 10, null);
+		assertEquals(2L, (long)result.get(0).id);
+		assertEquals(1L, (long)result.get(1).id);
+	}
+
+	@Test
+	public void infixMatchesAfterPrefixMatches() {
+		// happy is the most popular but only contains the term
+		assertEquals("[5, 6]", ids(index().suggest("app", 10, null)).toString());
+		assertEquals("[4]", ids(index().suggest("oph", 10, null)).toString());
+	}
+
+	@Test
+	public void caseInsensitive() {
+		assertEquals("[2]", ids(index().suggest("STEP", 10, null)).toString());
+	}
+
+	@Test
+	public void noInfixMatchForShortTerms() {
+		assertTrue(index().suggest("ph", 10, null).isEmpty());
+	}
+
+	@Test
+	public void limitAndAllowedIds() {
+		assertEquals(1, index().suggest("s", 1, null).size());
+		Set<Long> allowed = new HashSet<Long>();
+		allowed.add(1L);
+		assertEquals("[1]", ids(index().suggest("ste", 10, allowed)).toString());
+	}
+
+	@Test
+	public void emptyTerm() {
+		assertTrue(index().suggest("", 10, null).isEmpty());
+		assertTrue(index().suggest(null, 10, null).isEmpty());
+	}
+}
@@ -0,0 +1,69 @@
+package unit;
+import helpers.analytics.CohortRetention;
+import helpers.analytics.CohortRetention.Cohort;
+
+import java.util.Date;
+
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import play.test.UnitTest;
+
+public class CohortRetentionTest extends UnitTest {
+
+	private static final DateTime FROM = new DateTime(2011, 5, 2, 0, 0, 0, 0);
+
+	private static Date at(int days, int hours) {
+		return FROM.plusDays(days).plusHours(hours).toDate();
+	}
+
+	/** 2 weekly cohorts, returns in the 10 days after signup, re-logs 12 hours apart, periods of 1 day */
+	private CohortRetention retention() {
+		return new CohortRetention(FROM.toDate(), 2, 7, 10, 12, 1);
+	}
+
+	@Test
+	public void countsReLogsSpacedByTheStep() {
+		CohortRetention retention = retention();
+		retention.user(at(0, 0));
+		retention.visit(at(0, 1));  // too close to the signup
+		retention.visit(at(0, 13)); // re-log 1
+		retention.visit(at(0, 20)); // too close to the previous re-log
+		retention.visit(at(1, 2));  // re-log 2
+		retention.visit(at(10, 1)); // after the return window
+
+		Cohort cohort = retention.cohorts.get(0);
+		assertEquals(1, cohort.users);
+		assertEquals(1, cohort.reLogs[0]);
+		assertEquals(1, cohort.reLogs[1]);
+		assertEquals(0, cohort.reLogs[2]);
+		assertEquals(1, cohort.returned[0]);
+		assertEquals(1, cohort.returned[1]);
+		assertEquals(0, cohort.returned[2]);
+	}
+
+	@Test
+	public void groupsUsersByCohortOfSignup() {
+		CohortRetention retention = retention();
+		retention.user(at(1, 0));
+		retention.visit(at(3, 0));
+		retention.user(at(8, 0));
+		retention.user(at(9, 0));
+		retention.visit(at(9, 13));
+		retention.visit(at(12, 0));
+		retention.user(at(20, 0)); // after the last cohort
+
+		assertEquals(1, retention.cohorts.get(0).users);
+		assertEquals(1, retention.cohorts.get(0).reLogs[0]);
+		assertEquals(1, retention.cohorts.get(0).returned[2]);
+		assertEquals(2, retention.cohorts.get(1).users);
+		assertEquals(1, retention.cohorts.get(1).reLogs[0]);
+		assertEquals(1, retention.cohorts.get(1).reLogs[1]);
+		assertEquals(50, retention.cohorts.get(1).percent(retention.cohorts.get(1).reLogs[0]));
+
+		Cohort total = retention.total();
+		assertEquals(3, total.users);
+		assertEquals(2, total.reLogs[0]);
+		assertEquals(1, total.reLogs[1]);
+	}
+}
@@ -0,0 +1,43 @@
+package unit;
+import helpers.export.ColumnType;
+import helpers.export.ColumnarReader;
+import helpers.export.ColumnarWriter;
+
+import java.io.File;
+import java.util.Date;
+
+import models.Vote;
+
+import org.junit.Test;
+
+import play.test.UnitTest;
+
+public class ColumnarWriterTest extends UnitTest {
+
+	@Test
+	public void rowsAreReadBackColumnByColumn() throws Exception {
+		ColumnarWriter writer = new ColumnarWriter(
+				new String[] { "creationDate", "user", "score", "count", "state" },
+				new ColumnType[] { ColumnType.DATE, ColumnType.ID, ColumnType.DOUBLE, ColumnType.LONG, ColumnType.STRING });
+		long now = System.currentTimeMillis();
+		writer.addRow(new Date(now), 1500L, 0.25, -3L, Vote.State.AGREE);
+		writer.addRow(new Date(now + 1000), 12L, null, 5000000000L, Vote.State.DISAGREE);
+		writer.addRow(null, 1500L, 1.5, 0L, null);
+		writer.addRow(new Date(now + 1000), null, 2.0, 7L, "AGREE");
+
+		File file = File.createTempFile("columnar", ".col.gz");
+		try {
+			writer.write(file);
+			ColumnarReader reader = new ColumnarReader(file);
+			assertEquals(4, reader.rowCount());
+			assertEquals(ColumnType.ID, reader.types().get("user"));
+			assertArrayEquals(new Object[] { new Date(now), new Date(now + 1000), null, new Date(now + 1000) }, reader.column("creationDate"));
+			assertArrayEquals(new Object[] { 1500L, 12L, 1500L, null }, reader.column("user"));
+			assertArrayEquals(new Object[] { 0.25, null, 1.5, 2.0 }, reader.column("score"));
+			assertArrayEquals(new Object[] { -3L, 5000000000L, 0L, 7L }, reader.column("count"));
+			assertArrayEquals(new Object[] { "AGREE", "DISAGREE", null, "AGREE" }, reader.column("state"));
+		} finally {
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package unit;
+import helpers.analytics.DailyRollup;
+import helpers.analytics.DailyRollup.DayRange;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.joda.time.DateMidnight;
+import org.junit.Test;
+
+import play.test.UnitTest;
+
+public class DailyRollupTest extends UnitTest {
+
+	private static final DateMidnight FIRST = new DateMidnight(2011, 3, 25);
+
+	private static DateMidnight day(int i) {
+		return FIRST.plusDays(i);
+	}
+
+	private static List<Date> computed(int... days) {
+		List<Date> computed = new ArrayList<Date>();
+		for (int i : days) {
+			computed.add(day(i).toDate());
+		}
+		return computed;
+	}
+
+	private static void assertRange(DayRange range, int first, int last) {
+		assertEquals(day(first), range.first);
+		assertEquals(day(last), range.last);
+	}
+
+	@Test
+	public void nothingComputedIsOneRange() {
+		List<DayRange> missing = DailyRollup.missingDays(computed(), day(0), day(9));
+		assertEquals(1, missing.size());
+		assertRange(missing.get(0), 0, 9);
+	}
+
+	@Test
+	public void allComputedIsNoRange() {
+		assertTrue(DailyRollup.missingDays(computed(0, 1, 2, 3), day(0), day(3)).isEmpty());
+	}
+
+	@Test
+	public void holesBeforeTheLastComputedDayAreMissing() {
+		// a failed run on day 2, days 5 and 6 deleted, and the days after the last computed one
+		List<DayRange> missing = DailyRollup.missingDays(computed(0, 1, 3, 4, 7), day(0), day(9));
+		assertEquals(3, missing.size());
+		assertRange(missing.get(0), 2, 2);
+		assertRange(missing.get(1), 5, 6);
+		assertRange(missing.get(2), 8, 9);
+	}
+
+	@Test
+	public void computedDaysOutsideTheRangeAreIgnored() {
+		List<DayRange> missing = DailyRollup.missingDays(computed(0, 3, 12), day(2), day(5));
+		assertEquals(2, missing.size());
+		assertRange(missing.get(0), 2, 2);
+		assertRange(missing.get(1), 4, 5);
+	}
+}
@@ -0,0 +1,105 @@
+package unit;
+import helpers.analytics.DailySerie;
+
+import java.util.Date;
+
+import org.joda.time.DateMidnight;
+import org.junit.Test;
+
+import play.test.UnitTest;
+
+public class DailySerieTest extends UnitTest {
+
+	private static final DateMidnight FIRST = new DateMidnight(2011, 3, 25);
+
+	private static Date day(int i) {
+		return FIRST.plusDays(i).toDate();
+	}
+
+	/** 1, 2, 3... on consecutive days, across the change of time of march */
+	private DailySerie serie(int size) {
+		DailySerie serie = new DailySerie();
+		for (int i = 0; i < size; i++) {
+			serie.add(day(i), i + 1);
+		}
+		return serie;
+	}
+
+	@Test
+	public void pointsAreSortedByDay() {
+		DailySerie serie = new DailySerie();
+		serie.add(day(2), 3);
+		serie.add(day(0), 1);
+		serie.add(day(1), 2);
+		assertEquals(day(0), serie.date(0));
+		assertEquals(1, serie.value(0), 0);
+		assertEquals(day(2), serie.points().get(2).date);
+	}
+
+	@Test
+	public void missingDaysAreFilled() {
+		DailySerie serie = new DailySerie();
+		serie.add(day(1), 5);
+		serie.add(day(3), 7);
+		DailySerie filled = serie.fill(day(0), day(4), 0);
+		assertEquals(5, filled.size());
+		assertEquals(day(2), filled.date(2));
+		assertEquals(0, filled.value(2), 0);
+		assertEquals(7, filled.value(3), 0);
+		assertEquals(3, serie.fillGaps(-1).size());
+	}
+
+	@Test
+	public void aDayAddedTwiceKeepsItsLastValue() {
+		DailySerie serie = new DailySerie();
+		serie.add(day(0), 1);
+		serie.add(day(1), 2);
+		serie.add(day(1), 3);
+		serie.add(day(3), 4);
+		serie.add(day(0), 5);
+		assertEquals(3, serie.size());
+		assertEquals(5, serie.value(0), 0);
+		DailySerie filled = serie.fill(day(0), day(4), 0);
+		assertEquals(5, filled.size());
+		assertEquals(3, filled.value(1), 0);
+		assertEquals(0, filled.value(2), 0);
+		assertEquals(4, filled.value(3), 0);
+	}
+
+	@Test
+	public void rollingWindowsKeepTheFirstDays() {
+		DailySerie sums = serie(10).rollingSum(3);
+		assertEquals(10, sums.size());
+		assertEquals(1, sums.value(0), 0);
+		assertEquals(3, sums.value(1), 0);
+		assertEquals(1 + 2 + 3, sums.value(2), 0);
+		assertEquals(8 + 9 + 10, sums.value(9), 0);
+
+		DailySerie means = serie(10).rollingMean(3);
+		assertEquals(1.5, means.value(1), 0.001);
+		assertEquals(9, means.value(9), 0.001);
+	}
+
+	@Test
+	public void ratesArePerDay() {
+		DailySerie totals = new DailySerie();
+		totals.add(day(0), 10);
+		totals.add(day(2), 20);
+		totals.add(day(4), 40);
+		DailySerie rates = totals.rate(2);
+		assertEquals(2, rates.size());
+		assertEquals(5, rates.value(0), 0.001);
+		assertEquals(10, rates.value(1), 0.001);
+	}
+
+	@Test
+	public void downsamplingAveragesConsecutiveDays() {
+		DailySerie downsampled = serie(10).downsample(5);
+		assertEquals(5, downsampled.size());
+		assertEquals(1.5, downsampled.value(0), 0.001);
+		assertEquals(day(1), downsampled.date(0));
+		assertEquals(9.5, downsampled.value(4), 0.001);
+		assertEquals(3, serie(10).downsample(3).size());
+		assertEquals(10, serie(10).downsample(20).size());
+	}
+}
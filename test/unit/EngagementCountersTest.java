@@ -0,0 +1,59 @@
+package unit;
+import helpers.analytics.EngagementCounters;
+import helpers.analytics.EngagementCounters.Engagement;
+import helpers.analytics.EngagementCounters.Key;
+
+import java.util.Date;
+import java.util.Map;
+
+import org.joda.time.DateMidnight;
+import org.junit.Test;
+
+import play.test.UnitTest;
+
+public class EngagementCountersTest extends UnitTest {
+
+	private static final Date DAY = new DateMidnight(2011, 6, 10).toDate();
+
+	@Test
+	public void countsArePerInsightAndDayUntilDrained() {
+		EngagementCounters counters = new EngagementCounters();
+		counters.increment(1, Engagement.VIEW, DAY);
+		counters.increment(1, Engagement.VIEW, DAY);
+		counters.increment(1, Engagement.AGREE, DAY);
+		counters.increment(2, Engagement.COMMENT, DAY);
+		counters.increment(1, Engagement.VIEW, new DateMidnight(2011, 6, 11).toDate());
+
+		Map<Key, long[]> counts = counters.drain();
+		assertEquals(3, counts.size());
+		for (Map.Entry<Key, long[]> count : counts.entrySet()) {
+			if (!count.getKey().day.equals(DAY)) {
+				assertEquals(1, count.getKey().insightId);
+				assertEquals(1, count.getValue()[Engagement.VIEW.ordinal()]);
+			} else if (count.getKey().insightId == 1) {
+				assertEquals(2, count.getValue()[Engagement.VIEW.ordinal()]);
+				assertEquals(1, count.getValue()[Engagement.AGREE.ordinal()]);
+				assertEquals(0, count.getValue()[Engagement.COMMENT.ordinal()]);
+			} else {
+				assertEquals(1, count.getValue()[Engagement.COMMENT.ordinal()]);
+			}
+		}
+		assertTrue(counters.drain().isEmpty());
+	}
+
+	@Test
+	public void restoredCountsAreAddedToTheNewOnes() {
+		EngagementCounters counters = new EngagementCounters();
+		counters.increment(1, Engagement.VIEW, DAY);
+		Map<Key, long[]> drained = counters.drain();
+		counters.increment(1, Engagement.VIEW, DAY);
+		counters.increment(1, Engagement.AGREE, DAY);
+
+		counters.restore(drained);
+		Map<Key, long[]> counts = counters.drain();
+		assertEquals(1, counts.size());
+		long[] count = counts.values().iterator().next();
+		assertEquals(2, count[Engagement.VIEW.ordinal()]);
+		assertEquals(1, count[Engagement.AGREE.ordinal()]);
+	}
+}
@@ -0,0 +1,67 @@
+package unit;
+import helpers.analytics.HeavyHitters;
+import helpers.analytics.SpaceSaving;
+import helpers.analytics.SpaceSaving.Counter;
+
+import java.util.List;
+import java.util.Random;
+
+import org.joda.time.LocalDate;
+import org.junit.Test;
+
+import play.test.UnitTest;
+
+public class HeavyHittersTest extends UnitTest {
+
+	@Test
+	public void frequentIdsAreFoundAmongManyRareOnes() {
+		SpaceSaving summary = new SpaceSaving(100);
+		Random random = new Random(1);
+		for (int i = 0; i < 100000; i++) {
+			// a quarter of the stream is made of 5 ids, the rest of ids seen about once
+			summary.offer(random.nextInt(4) == 0 ? random.nextInt(5) : 100 + random.nextInt(100000));
+		}
+		List<Counter> top = summary.top(5);
+		assertEquals(5, top.size());
+		for (Counter counter : top) {
+			assertTrue(counter.id < 5);
+			assertTrue(counter.count > 4500);
+		}
+	}
+
+	@Test
+	public void countsAreExactBelowTheCapacity() {
+		SpaceSaving summary = new SpaceSaving(10);
+		summary.offer(1, 3);
+		summary.offer(2);
+		summary.offer(1);
+		List<Counter> top = summary.top(5);
+		assertEquals(2, top.size());
+		assertEquals(1, top.get(0).id);
+		assertEquals(4, top.get(0).count);
+		assertEquals(0, top.get(0).error);
+		assertEquals(2, top.get(1).id);
+	}
+
+	@Test
+	public void topsOnlyCountTheDaysOfTheWindow() {
+		HeavyHitters top = new HeavyHitters();
+		LocalDate today = new LocalDate(2011, 6, 10);
+		top.offer(1, 5, today.minusDays(HeavyHitters.WINDOW_DAYS + 1));
+		top.offer(1, 3, today.minusDays(HeavyHitters.WINDOW_DAYS));
+		top.offer(1, 1, today.minusDays(1));
+		top.offer(2, 2, today);
+
+		List<Counter> counters = top.top(5, today);
+		assertEquals(2, counters.size());
+		assertEquals(1, counters.get(0).id);
+		assertEquals(4, counters.get(0).count);
+		assertEquals(2, counters.get(1).count);
+
+		// the next day, the oldest day leaves the window
+		counters = top.top(5, today.plusDays(1));
+		assertEquals(2, counters.get(0).id);
+		assertEquals(1, counters.get(1).id);
+		assertEquals(1, counters.get(1).count);
+	}
+}
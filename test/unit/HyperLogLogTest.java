@@ -0,0 +1,58 @@
+package unit;
+import helpers.analytics.HyperLogLog;
+
+import org.junit.Test;
+
+import play.test.UnitTest;
+
+public class HyperLogLogTest extends UnitTest {
+
+	private HyperLogLog sketch(long from, long to) {
+		HyperLogLog sketch = new HyperLogLog();
+		for (long id = from; id < to; id++) {
+			sketch.offer(id);
+		}
+		return sketch;
+	}
+
+	private void assertAbout(long expected, long actual) {
+		assertTrue("expected about " + expected + " but was " + actual, Math.abs(actual - expected) <= expected * 0.03);
+	}
+
+	@Test
+	public void smallCardinalitiesAreExact() {
+		assertEquals(0, new HyperLogLog().cardinality());
+		assertEquals(10, sketch(0, 10).cardinality());
+	}
+
+	@Test
+	public void largeCardinalitiesAreApproximated() {
+		assertAbout(100000, sketch(0, 100000).cardinality());
+	}
+
+	@Test
+	public void duplicatesAreCountedOnce() {
+		HyperLogLog sketch = sketch(0, 5000);
+		for (long id = 0; id < 5000; id++) {
+			sketch.offer(id);
+		}
+		assertAbout(5000, sketch.cardinality());
+	}
+
+	@Test
+	public void mergeCountsTheUnion() {
+		HyperLogLog week = sketch(0, 60000);
+		week.merge(sketch(30000, 90000));
+		week.merge(sketch(0, 10));
+		assertAbout(90000, week.cardinality());
+	}
+
+	@Test
+	public void serializationKeepsTheRegisters() {
+		HyperLogLog sparse = sketch(0, 50);
+		HyperLogLog dense = sketch(0, 50000);
+		assertTrue(sparse.toBytes().length < 1000);
+		assertEquals(sparse.cardinality(), HyperLogLog.fromBytes(sparse.toBytes()).cardinality());
+		assertEquals(dense.cardinality(), HyperLogLog.fromBytes(dense.toBytes()).cardinality());
+	}
+}
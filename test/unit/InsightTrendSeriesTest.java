@@ -0,0 +1,47 @@
+package unit;
+import helpers.cache.InsightTrendSeries;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+import play.test.UnitTest;
+
+public class InsightTrendSeriesTest extends UnitTest {
+
+	private List<Object[]> rows(int number) {
+		List<Object[]> rows = new ArrayList<Object[]>();
+		for (int i = 0; i < number; i++) {
+			rows.add(new Object[] {new Date(i * 1000L), 0.5d, new Long(i), new Long(number - i)});
+		}
+		return rows;
+	}
+
+	@Test
+	public void keepAllPointsUnderTheLimit() {
+		InsightTrendSeries series = InsightTrendSeries.fromRows(rows(10), 200);
+		assertEquals(10, series.size());
+		for (int i = 0; i < 10; i++) {
+			assertEquals(i * 1000L, series.timestamps[i]);
+			assertEquals(i, series.agreeCounts[i]);
+		}
+	}
+
+	@Test
+	public void downsampleKeepsFirstAndLastPoints() {
+		InsightTrendSeries series = InsightTrendSeries.fromRows(rows(1000), 200);
+		assertEquals(200, series.size());
+		assertEquals(0L, series.timestamps[0]);
+		assertEquals(999 * 1000L, series.timestamps[199]);
+		for (int i = 1; i < series.size(); i++) {
+			assertTrue(series.timestamps[i] > series.timestamps[i - 1]);
+		}
+	}
+
+	@Test
+	public void emptySeries() {
+		assertEquals(0, InsightTrendSeries.fromRows(rows(0), 200).size());
+	}
+}
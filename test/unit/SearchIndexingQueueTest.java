@@ -0,0 +1,60 @@
+package unit;
+import models.Category;
+import models.Insight;
+import models.Vote.State;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.joda.time.LocalDate;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import play.modules.search.store.FilesystemStore;
+import play.test.Fixtures;
+import play.test.UnitTest;
+
+public class SearchIndexingQueueTest extends UnitTest {
+
+	/** an index of its own, not to touch the index of the insights */
+	private static final String INDEX = "unit.SearchIndexingQueueTest";
+
+	private FilesystemStore store;
+
+	@Before
+	public void setup() {
+		Fixtures.deleteAll();
+		Fixtures.load("initial-data.yml");
+		TestHelper.createTestUser();
+		store = new FilesystemStore();
+		// written only by flushQueue() during the test
+		store.startQueue(3600 * 1000L);
+		store.delete(INDEX);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		store.delete(INDEX);
+		store.stop();
+	}
+
+	@Test
+	public void previousVersionSavedAgainBeforeTheBatchIsWritten() throws Exception {
+		Category categoryWeb = Category.findByLabel("Web");
+		Insight insight = TestHelper.getTestUser().createInsight("first version", new LocalDate(2010, 9, 1).toDateMidnight().toDate(), "test", categoryWeb.id, "en", State.AGREE);
+		store.index(insight, INDEX);
+		store.flushQueue();
+
+		// saved and reverted within one interval
+		insight.content = "second version";
+		store.index(insight, INDEX);
+		insight.content = "first version";
+		store.index(insight, INDEX);
+		store.flushQueue();
+
+		IndexSearcher searcher = store.getIndexSearcher(INDEX);
+		assertEquals(1, searcher.search(new TermQuery(new Term("content", "first"))).length());
+		assertEquals(0, searcher.search(new TermQuery(new Term("content", "second"))).length());
+	}
+}